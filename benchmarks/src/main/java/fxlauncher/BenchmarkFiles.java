@@ -0,0 +1,99 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Creates the synthetic files the benchmarks work on. Library paths in a manifest are relative to
+ * the working directory, so everything is created below <code>target/fxlauncher-bench</code> of the
+ * directory the benchmarks are started from.
+ */
+class BenchmarkFiles {
+    static final Path ROOT = Paths.get("target", "fxlauncher-bench");
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * A fresh, empty directory below the benchmark root.
+     */
+    static Path directory(String name) throws IOException {
+        Path dir = ROOT.resolve(name);
+        delete(dir);
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    /**
+     * A file of the given size with random content.
+     */
+    static Path randomFile(Path path, int size, long seed) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, bytes);
+    }
+
+    /**
+     * A jar with <code>packages</code> packages of <code>entries</code> resources each, named
+     * <code>lib&lt;n&gt;/pkg&lt;p&gt;/Entry&lt;e&gt;.txt</code> so every jar owns its own packages.
+     */
+    static Path jar(Path path, int n, int packages, int entries, int entrySize) throws IOException {
+        Random random = new Random(n);
+        byte[] content = new byte[entrySize];
+        Files.createDirectories(path.getParent());
+        try (OutputStream output = Files.newOutputStream(path); JarOutputStream jar = new JarOutputStream(output)) {
+            for (int p = 0; p < packages; p++) {
+                for (int e = 0; e < entries; e++) {
+                    random.nextBytes(content);
+                    jar.putNextEntry(new JarEntry(String.format("lib%d/pkg%d/Entry%d.txt", n, p, e)));
+                    jar.write(content);
+                    jar.closeEntry();
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * A manifest with one entry per jar in the directory, as CreateManifest would write it.
+     */
+    static FXManifest manifest(URI uri, String launchClass, Path dir, int jars, HashAlgorithm algorithm) throws IOException {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = uri;
+        manifest.launchClass = launchClass;
+        manifest.algorithm = algorithm;
+        manifest.majorVersion = "1";
+        manifest.minorVersion = "0";
+        manifest.buildVersion = "0";
+        for (int i = 0; i < jars; i++)
+            manifest.files.add(new LibraryFile(Paths.get(""), dir.resolve(String.format("lib-%03d.jar", i)), algorithm));
+        return manifest;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package fxlauncher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checksums of single files of different sizes, for every supported algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChecksumBenchmark {
+    @Param({"16384", "1048576", "33554432"})
+    int size;
+
+    @Param({"adler32", "crc32c", "xxhash64"})
+    String algorithm;
+
+    private Path file;
+    private HashAlgorithm hasher;
+
+    @Setup
+    public void setup() throws IOException {
+        file = BenchmarkFiles.randomFile(BenchmarkFiles.directory("checksum").resolve("file.bin"), size, 1);
+        hasher = HashAlgorithm.valueOf(algorithm);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(file.getParent());
+    }
+
+    @Benchmark
+    public long hash() throws IOException {
+        return hasher.hash(file);
+    }
+
+    /**
+     * The checksum every manifest without an algorithm attribute uses.
+     */
+    @Benchmark
+    public long libraryFileChecksum() throws IOException {
+        return LibraryFile.checksum(file);
+    }
+}
@@ -0,0 +1,99 @@
+package fxlauncher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the application class loader for 60 libraries, and looking up resources and classes through it.
+ * The plain URLClassLoader lookups are the baseline the indexed class loader is measured against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderBenchmark {
+    private static final int LIBRARIES = 60;
+    private static final int PACKAGES = 10;
+    private static final int ENTRIES = 20;
+
+    private Path dir;
+    private FXManifest manifest;
+    private URLClassLoader indexed;
+    private URLClassLoader plain;
+    private String lastResource;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkFiles.directory("classloader");
+        for (int i = 0; i < LIBRARIES; i++)
+            BenchmarkFiles.jar(dir.resolve(String.format("lib-%03d.jar", i)), i, PACKAGES, ENTRIES, 256);
+        manifest = BenchmarkFiles.manifest(URI.create("http://localhost/app/"), dir.resolve("bench.App").toString(), dir, LIBRARIES, null);
+
+        indexed = IndexedClassLoader.create(manifest);
+        plain = new URLClassLoader(manifest.files.stream().map(LibraryFile::toURL).toArray(URL[]::new));
+        lastResource = String.format("lib%d/pkg%d/Entry%d.txt", LIBRARIES - 1, PACKAGES - 1, ENTRIES - 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexed.close();
+        plain.close();
+        BenchmarkFiles.delete(dir);
+    }
+
+    /**
+     * Create and close the class loader with an up to date package index, as on a start without updates.
+     */
+    @Benchmark
+    public URLClassLoader createClassLoader() throws IOException {
+        URLClassLoader loader = IndexedClassLoader.create(manifest);
+        loader.close();
+        return loader;
+    }
+
+    @Benchmark
+    public URL indexedResourceHit() {
+        return indexed.getResource(lastResource);
+    }
+
+    @Benchmark
+    public URL indexedResourceMiss() {
+        return indexed.getResource("missing/pkg/Missing.txt");
+    }
+
+    @Benchmark
+    public Class<?> indexedClassMiss() {
+        return loadOrNull(indexed, "missing.pkg.Missing");
+    }
+
+    @Benchmark
+    public URL plainResourceHit() {
+        return plain.getResource(lastResource);
+    }
+
+    @Benchmark
+    public URL plainResourceMiss() {
+        return plain.getResource("missing/pkg/Missing.txt");
+    }
+
+    @Benchmark
+    public Class<?> plainClassMiss() {
+        return loadOrNull(plain, "missing.pkg.Missing");
+    }
+
+    private static Class<?> loadOrNull(ClassLoader loader, String name) {
+        try {
+            return loader.loadClass(name);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fxlauncher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and comparing a manifest with 150 libraries, as done for the embedded, cached and remote
+ * manifest on every start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifestBenchmark {
+    private static final int LIBRARIES = 150;
+
+    private byte[] xml;
+    private Path xmlPath;
+    private Path binaryPath;
+    private FXManifest manifest;
+    private FXManifest copy;
+
+    @Setup
+    public void setup() throws IOException {
+        Path dir = BenchmarkFiles.directory("manifest");
+        for (int i = 0; i < LIBRARIES; i++)
+            BenchmarkFiles.randomFile(dir.resolve(String.format("lib-%03d.jar", i)), 1024, i);
+        manifest = BenchmarkFiles.manifest(URI.create("http://localhost/app/"), "bench.App", dir, LIBRARIES, null);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ManifestXml.write(manifest, output);
+        xml = output.toByteArray();
+        copy = ManifestXml.read(new ByteArrayInputStream(xml));
+
+        xmlPath = dir.resolve("bench.App.xml");
+        binaryPath = dir.resolve("bench.App.bin");
+        ManifestXml.write(manifest, xmlPath);
+        BinaryManifest.write(manifest, xmlPath, binaryPath);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(xmlPath.getParent());
+    }
+
+    @Benchmark
+    public FXManifest parseXml() throws IOException {
+        return ManifestXml.read(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public FXManifest readBinary() {
+        return BinaryManifest.read(xmlPath, binaryPath);
+    }
+
+    @Benchmark
+    public byte[] writeXml() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(xml.length);
+        ManifestXml.write(manifest, output);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public boolean equalsManifest() {
+        return manifest.equals(copy);
+    }
+}
@@ -0,0 +1,114 @@
+package fxlauncher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronizing 40 libraries of about 1 MB from an in-process HTTP server into an empty directory, through
+ * <code>SyncFilesService</code> with a progress sink that discards the snapshots. This includes verifying
+ * the downloads, moving them into place and building the package index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SyncBenchmark {
+    private static final int LIBRARIES = 40;
+
+    @Param({"1", "6"})
+    int downloadThreads;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Path source;
+    private Path target;
+    private FXManifest manifest;
+
+    @Setup
+    public void setup() throws IOException {
+        source = BenchmarkFiles.directory("sync-source");
+        Map<String, byte[]> files = new HashMap<>();
+        for (int i = 0; i < LIBRARIES; i++) {
+            Path lib = BenchmarkFiles.jar(source.resolve(String.format("lib-%03d.jar", i)), i, 1, 16, 64 * 1024);
+            files.put(lib.getFileName().toString(), Files.readAllBytes(lib));
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = files.get(path.substring(path.lastIndexOf('/') + 1));
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        // The server only looks at the file name, so the manifest entries can point into the target directory
+        target = BenchmarkFiles.ROOT.resolve("sync-target");
+        URI uri = URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+        FXManifest sourceManifest = BenchmarkFiles.manifest(uri, "bench.App", source, LIBRARIES, null);
+
+        manifest = new FXManifest();
+        manifest.uri = uri;
+        manifest.launchClass = target.resolve("bench.App").toString();
+        manifest.downloadThreads = downloadThreads;
+        manifest.connectionsPerHost = downloadThreads;
+        for (LibraryFile lib : sourceManifest.files) {
+            LibraryFile copy = new LibraryFile();
+            copy.file = target.resolve(lib.toPath().getFileName()).toString().replace('\\', '/');
+            copy.checksum = lib.checksum;
+            copy.size = lib.size;
+            manifest.files.add(copy);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTarget() throws IOException {
+        BenchmarkFiles.directory("sync-target");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        BenchmarkFiles.delete(source);
+        BenchmarkFiles.delete(target);
+    }
+
+    @Benchmark
+    public Boolean sync() throws Exception {
+        FXManifest fresh = new FXManifest();
+        fresh.uri = manifest.uri;
+        fresh.launchClass = manifest.launchClass;
+        fresh.downloadThreads = manifest.downloadThreads;
+        fresh.connectionsPerHost = manifest.connectionsPerHost;
+        fresh.files = manifest.files;
+
+        Boolean synced = new SyncFilesService(fresh, progress -> {}).call();
+        if (!synced)
+            throw new IllegalStateException("Synchronization failed");
+        return synced;
+    }
+}
@@ -0,0 +1,73 @@
+package fxlauncher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full <code>filesNeedingUpdate()</code> scan over 150 installed libraries. The cold scan has no
+ * verification index and checksums every file, the warm scan trusts the index after a stat call per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerificationBenchmark {
+    private static final int LIBRARIES = 150;
+
+    @Param({"65536", "1048576"})
+    int librarySize;
+
+    @Param({"adler32", "xxhash64"})
+    String algorithm;
+
+    private Path dir;
+    private FXManifest installed;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkFiles.directory("verification");
+        for (int i = 0; i < LIBRARIES; i++)
+            BenchmarkFiles.randomFile(dir.resolve(String.format("lib-%03d.jar", i)), librarySize, i);
+        // The index is saved next to the cached manifest, which is named after the launch class
+        String launchClass = dir.resolve("bench.App").toString();
+        installed = BenchmarkFiles.manifest(URI.create("http://localhost/app/"), launchClass, dir, LIBRARIES, HashAlgorithm.valueOf(algorithm));
+        manifest().filesNeedingUpdate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public List<LibraryFile> coldScan() throws IOException {
+        FXManifest manifest = manifest();
+        Files.deleteIfExists(manifest.getIndexPath());
+        return manifest.filesNeedingUpdate();
+    }
+
+    @Benchmark
+    public List<LibraryFile> warmScan() {
+        return manifest().filesNeedingUpdate();
+    }
+
+    /**
+     * A new manifest instance for the installed files, which loads the verification index from disk like a new start would.
+     */
+    private FXManifest manifest() {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = installed.uri;
+        manifest.launchClass = installed.launchClass;
+        manifest.algorithm = installed.algorithm;
+        manifest.files = installed.files;
+        return manifest;
+    }
+}
@@ -0,0 +1,147 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stages a new version of the application in the background while the installed version is running.
+ *
+ * The new files are downloaded and verified into their staging paths, and the new manifest is written
+ * to <code>&lt;launchClass&gt;.pending.xml</code> once every file is staged. The staged version is activated
+ * the next time the launcher starts, before any of its files are opened. The files of the running version are
+ * never replaced, because classes the application has not loaded yet would then come from the new version.
+ *
+ * The application can reach the updater through {@link LauncherParams#getBackgroundUpdater()} to find out when
+ * a new version is staged, for example to tell the user it is used after a restart.
+ */
+public class BackgroundUpdater {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    private final FXManifest manifest;
+    private final ManifestLoader loader = new ManifestLoader();
+    private volatile FXManifest staged;
+    private volatile Runnable onUpdateStaged;
+
+    public BackgroundUpdater(FXManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Check for a new version and stage it on a background thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this::stageUpdate, "fxlauncher-background-update");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @return true if a new version has been staged and is waiting to be activated
+     */
+    public boolean isUpdateStaged() {
+        return staged != null;
+    }
+
+    /**
+     * Set a callback that is invoked when a new version has been staged. The callback is invoked on
+     * the background update thread, so use <code>Platform.runLater</code> to touch the user interface.
+     */
+    public void setOnUpdateStaged(Runnable onUpdateStaged) {
+        this.onUpdateStaged = onUpdateStaged;
+        if (onUpdateStaged != null && staged != null)
+            onUpdateStaged.run();
+    }
+
+    /**
+     * Activate a version that was staged by an earlier launch.
+     *
+     * @param manifest the manifest of the installed version
+     * @return the manifest of the activated version, or the given manifest if nothing was staged
+     */
+    public static FXManifest activatePending(FXManifest manifest) {
+        Path pendingPath = manifest.getPendingPath();
+        if (!Files.exists(pendingPath))
+            return manifest;
+
+        try {
+            FXManifest pending = ManifestXml.read(pendingPath);
+            commit(pending);
+            pending.cached = true;
+            log.info(String.format("Activated staged version %s.%s.%s", pending.majorVersion, pending.minorVersion, pending.buildVersion));
+            return pending;
+        } catch (Exception ex) {
+            log.log(Level.WARNING, String.format("Unable to activate staged update %s", pendingPath), ex);
+            return manifest;
+        }
+    }
+
+    private void stageUpdate() {
+        try {
+            HttpSession session = new HttpSession(manifest);
+            FXManifest remoteManifest = loader.fetchRemote(manifest, session);
+            if (remoteManifest == null || remoteManifest == manifest)
+                return;
+
+            if (remoteManifest.equals(manifest)) {
+                loader.saveValidators(remoteManifest);
+                return;
+            }
+
+            remoteManifest.shareVerificationIndex(manifest);
+            List<LibraryFile> needsUpdate = remoteManifest.filesNeedingUpdate();
+            List<LibraryFile> failed = new DownloadEngine(remoteManifest, session).download(needsUpdate, read -> {});
+            if (!failed.isEmpty()) {
+                log.warning(String.format("%d files of the new version could not be staged, trying again on the next start", failed.size()));
+                return;
+            }
+
+            Path pendingPath = remoteManifest.getPendingPath();
+            ManifestXml.write(remoteManifest, pendingPath);
+            loader.saveValidators(remoteManifest);
+
+            staged = remoteManifest;
+            Runnable callback = onUpdateStaged;
+            if (callback != null)
+                callback.run();
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "Unable to stage update in the background", ex);
+        }
+    }
+
+    /**
+     * Move the staged files of the pending version into place and make its manifest the cached manifest.
+     */
+    private static void commit(FXManifest pending) throws IOException {
+        Path pendingPath = pending.getPendingPath();
+        List<LibraryFile> needsUpdate = pending.filesNeedingUpdate();
+
+        for (LibraryFile lib : needsUpdate) {
+            Path staging = lib.getStagingPath();
+            if (!Files.exists(staging) || Files.size(staging) != lib.size) {
+                Files.deleteIfExists(pendingPath);
+                ManifestLoader.clearValidators(pending);
+                throw new IOException(String.format("Staged file %s is missing, discarding the pending update", staging));
+            }
+        }
+
+        ClassDataSharing.invalidate(pending);
+        new DownloadEngine(pending).commit(needsUpdate, pending.getVerificationIndex());
+        move(pendingPath, pending.getPath());
+        BinaryManifest.write(pending, pending.getPath(), pending.getBinaryPath());
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package fxlauncher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates and applies binary deltas between two versions of a file.
+ *
+ * The old version is split into fixed size blocks which are indexed by a rolling checksum.
+ * The new version is then scanned byte by byte, and every region that can be found in the
+ * old version is encoded as a copy instruction, while everything else is inserted literally.
+ * Unchanged entries in a jar keep their compressed bytes between builds, so the delta for a
+ * jar where a few classes changed is only slightly larger than those classes.
+ *
+ * The instruction stream is gzip compressed. The result of applying a delta is not verified
+ * here, the caller is expected to check it against the manifest checksum.
+ */
+public class BinaryDelta {
+    private static final int MAGIC = 0x46584C44; // FXLD
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 512;
+
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int INSERT = 2;
+
+    /**
+     * Write a delta that turns the source file into the target file.
+     */
+    public static void create(Path source, Path target, OutputStream out) throws IOException {
+        byte[] src = Files.readAllBytes(source);
+        byte[] dst = Files.readAllBytes(target);
+
+        Map<Integer, int[]> blocks = indexBlocks(src);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 65536);
+        DataOutputStream ops = new DataOutputStream(new BufferedOutputStream(gzip, 65536));
+
+        int literalStart = 0;
+        int pos = 0;
+        int hash = dst.length >= BLOCK_SIZE ? weakHash(dst, 0, BLOCK_SIZE) : 0;
+
+        while (pos + BLOCK_SIZE <= dst.length) {
+            int match = findMatch(blocks.get(hash), src, dst, pos);
+            if (match >= 0) {
+                int length = BLOCK_SIZE;
+                while (pos + length < dst.length && match + length < src.length && dst[pos + length] == src[match + length])
+                    length++;
+
+                writeInsert(ops, dst, literalStart, pos - literalStart);
+                writeCopy(ops, match, length);
+
+                pos += length;
+                literalStart = pos;
+                if (pos + BLOCK_SIZE <= dst.length)
+                    hash = weakHash(dst, pos, BLOCK_SIZE);
+            } else {
+                if (pos + BLOCK_SIZE < dst.length)
+                    hash = roll(hash, dst[pos], dst[pos + BLOCK_SIZE]);
+                pos++;
+            }
+        }
+
+        writeInsert(ops, dst, literalStart, dst.length - literalStart);
+        ops.writeByte(END);
+        ops.flush();
+        gzip.finish();
+        out.flush();
+    }
+
+    /**
+     * Apply a delta to the source file, writing the reconstructed file to the given stream.
+     *
+     * @return the number of bytes written
+     */
+    public static long apply(Path source, InputStream delta, OutputStream out) throws IOException {
+        DataInputStream header = new DataInputStream(delta);
+        if (header.readInt() != MAGIC)
+            throw new IOException("Not a delta file");
+        int version = header.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported delta version %d", version));
+
+        DataInputStream ops = new DataInputStream(new BufferedInputStream(new GZIPInputStream(delta, 65536), 65536));
+        byte[] buf = new byte[65536];
+        long written = 0;
+
+        try (RandomAccessFile src = new RandomAccessFile(source.toFile(), "r")) {
+            int op;
+            while ((op = ops.readUnsignedByte()) != END) {
+                if (op == COPY) {
+                    long offset = readVarLong(ops);
+                    long length = readVarLong(ops);
+                    if (offset < 0 || length < 0 || offset + length > src.length())
+                        throw new IOException("Delta refers outside of the source file");
+                    src.seek(offset);
+                    while (length > 0) {
+                        int chunk = (int) Math.min(buf.length, length);
+                        src.readFully(buf, 0, chunk);
+                        out.write(buf, 0, chunk);
+                        length -= chunk;
+                        written += chunk;
+                    }
+                } else if (op == INSERT) {
+                    long length = readVarLong(ops);
+                    while (length > 0) {
+                        int chunk = (int) Math.min(buf.length, length);
+                        ops.readFully(buf, 0, chunk);
+                        out.write(buf, 0, chunk);
+                        length -= chunk;
+                        written += chunk;
+                    }
+                } else {
+                    throw new IOException(String.format("Unknown delta instruction %d", op));
+                }
+            }
+        }
+
+        return written;
+    }
+
+    private static Map<Integer, int[]> indexBlocks(byte[] src) {
+        Map<Integer, int[]> blocks = new HashMap<>();
+        for (int offset = 0; offset + BLOCK_SIZE <= src.length; offset += BLOCK_SIZE) {
+            int hash = weakHash(src, offset, BLOCK_SIZE);
+            int[] offsets = blocks.get(hash);
+            if (offsets == null) {
+                blocks.put(hash, new int[]{offset});
+            } else if (offsets.length < 8) {
+                offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                offsets[offsets.length - 1] = offset;
+                blocks.put(hash, offsets);
+            }
+        }
+        return blocks;
+    }
+
+    private static int findMatch(int[] candidates, byte[] src, byte[] dst, int pos) {
+        if (candidates == null)
+            return -1;
+        for (int candidate : candidates) {
+            int i = 0;
+            while (i < BLOCK_SIZE && src[candidate + i] == dst[pos + i])
+                i++;
+            if (i == BLOCK_SIZE)
+                return candidate;
+        }
+        return -1;
+    }
+
+    /**
+     * Adler style checksum of a window. The two 16 bit sums are kept in the low and high half of the int.
+     */
+    private static int weakHash(byte[] data, int offset, int length) {
+        int a = 0, b = 0;
+        for (int i = 0; i < length; i++) {
+            a += data[offset + i] & 0xff;
+            b += a;
+        }
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static int roll(int hash, byte out, byte in) {
+        int a = hash & 0xffff;
+        int b = hash >>> 16;
+        a = (a - (out & 0xff) + (in & 0xff)) & 0xffff;
+        b = (b - BLOCK_SIZE * (out & 0xff) + a) & 0xffff;
+        return a | (b << 16);
+    }
+
+    private static void writeCopy(DataOutputStream ops, long offset, long length) throws IOException {
+        ops.writeByte(COPY);
+        writeVarLong(ops, offset);
+        writeVarLong(ops, length);
+    }
+
+    private static void writeInsert(DataOutputStream ops, byte[] data, int offset, int length) throws IOException {
+        if (length == 0)
+            return;
+        ops.writeByte(INSERT);
+        writeVarLong(ops, length);
+        ops.write(data, offset, length);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new EOFException("Malformed variable length number in delta");
+    }
+}
@@ -0,0 +1,251 @@
+package fxlauncher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary copy of the cached manifest, saved as <code>&lt;launchClass&gt;.bin</code>.
+ * It records the size, modification time and xxHash64 checksum of the XML file it was made from, and is only used
+ * while the XML file is unchanged. The checksum catches a rewrite of the same size within one modification time
+ * tick. Reading it is a single pass over a mapped buffer.
+ */
+public class BinaryManifest {
+    private static final Logger log = Logger.getLogger("Launcher");
+    private static final int MAGIC = 0x46584D42;
+    private static final int VERSION = 8;
+
+    /**
+     * A mapping keeps the file locked on Windows, which would stop the next save from replacing it.
+     */
+    private static final boolean MAP_FILES = OS.current != OS.win;
+
+    private BinaryManifest() {
+    }
+
+    /**
+     * Read the binary copy of the manifest stored at the given XML path.
+     *
+     * @return the manifest, or null if there is no binary copy or it is out of date
+     */
+    public static FXManifest read(Path xmlPath, Path path) {
+        if (!Files.exists(path))
+            return null;
+
+        try {
+            BasicFileAttributes xml = Files.readAttributes(xmlPath, BasicFileAttributes.class);
+            ByteBuffer buf;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (MAP_FILES) {
+                    buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } else {
+                    buf = ByteBuffer.allocate((int) channel.size());
+                    while (buf.hasRemaining())
+                        if (channel.read(buf) == -1)
+                            break;
+                    buf.flip();
+                }
+            }
+
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != xml.size() || buf.getLong() != xml.lastModifiedTime().toMillis())
+                return null;
+            if (buf.getLong() != checksum(xmlPath))
+                return null;
+
+            return readManifest(buf);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            log.log(Level.WARNING, String.format("Ignoring unreadable binary manifest %s", path), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Save a binary copy of the manifest that was just saved to the given XML path.
+     */
+    public static void write(FXManifest manifest, Path xmlPath, Path path) {
+        try {
+            BasicFileAttributes xml = Files.readAttributes(xmlPath, BasicFileAttributes.class);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(xml.size());
+            out.writeLong(xml.lastModifiedTime().toMillis());
+            out.writeLong(checksum(xmlPath));
+            writeManifest(manifest, out);
+            out.flush();
+
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to save binary manifest %s", path), ex);
+        }
+    }
+
+    private static long checksum(Path xmlPath) throws IOException {
+        XxHash64 hash = new XxHash64();
+        byte[] data = Files.readAllBytes(xmlPath);
+        hash.update(data, 0, data.length);
+        return hash.getValue();
+    }
+
+    private static void writeManifest(FXManifest manifest, DataOutputStream out) throws IOException {
+        writeString(out, manifest.uri == null ? null : manifest.uri.toString());
+        writeString(out, manifest.launchClass);
+        writeEnum(out, manifest.algorithm);
+        writeString(out, manifest.updateText);
+        writeString(out, manifest.updateLabelStyle);
+        writeString(out, manifest.progressBarStyle);
+        writeString(out, manifest.wrapperStyle);
+        writeString(out, manifest.parameters);
+        writeString(out, manifest.majorVersion);
+        writeString(out, manifest.minorVersion);
+        writeString(out, manifest.buildVersion);
+        writeString(out, manifest.releaseNotes);
+        out.writeInt(manifest.downloadThreads);
+        out.writeInt(manifest.connectionsPerHost);
+        out.writeInt(manifest.downloadRetries);
+        writeEnum(out, manifest.updateMode);
+        out.writeBoolean(manifest.classDataSharing);
+        out.writeInt(manifest.connectTimeout);
+        out.writeInt(manifest.readTimeout);
+        writeString(out, manifest.sharedCache);
+        out.writeLong(manifest.sharedCacheSize);
+
+        out.writeInt(manifest.files.size());
+        for (LibraryFile lib : manifest.files) {
+            writeString(out, lib.file);
+            writeLong(out, lib.checksum);
+            writeLong(out, lib.size);
+            writeEnum(out, lib.os);
+            writeLong(out, lib.modified);
+            writeEnum(out, lib.algorithm);
+            writeString(out, lib.bundle);
+            writeLong(out, lib.gzipSize);
+            out.writeByte(lib.lazy == null ? -1 : lib.lazy ? 1 : 0);
+            writeString(out, lib.packages == null ? null : String.join(" ", lib.packages));
+            out.writeInt(lib.deltas.size());
+            for (DeltaFile delta : lib.deltas) {
+                writeString(out, delta.file);
+                writeLong(out, delta.from);
+                writeLong(out, delta.size);
+            }
+        }
+
+        out.writeInt(manifest.mirrors.size());
+        for (URI mirror : manifest.mirrors)
+            writeString(out, mirror.toString());
+    }
+
+    private static FXManifest readManifest(ByteBuffer buf) {
+        FXManifest manifest = new FXManifest();
+        String uri = readString(buf);
+        manifest.uri = uri == null ? null : URI.create(uri);
+        manifest.launchClass = readString(buf);
+        manifest.algorithm = readEnum(buf, HashAlgorithm.values());
+        manifest.updateText = readString(buf);
+        manifest.updateLabelStyle = readString(buf);
+        manifest.progressBarStyle = readString(buf);
+        manifest.wrapperStyle = readString(buf);
+        manifest.parameters = readString(buf);
+        manifest.majorVersion = readString(buf);
+        manifest.minorVersion = readString(buf);
+        manifest.buildVersion = readString(buf);
+        manifest.releaseNotes = readString(buf);
+        manifest.downloadThreads = buf.getInt();
+        manifest.connectionsPerHost = buf.getInt();
+        manifest.downloadRetries = buf.getInt();
+        manifest.updateMode = readEnum(buf, UpdateMode.values());
+        manifest.classDataSharing = buf.get() != 0;
+        manifest.connectTimeout = buf.getInt();
+        manifest.readTimeout = buf.getInt();
+        manifest.sharedCache = readString(buf);
+        manifest.sharedCacheSize = buf.getLong();
+
+        int files = buf.getInt();
+        for (int i = 0; i < files; i++) {
+            LibraryFile lib = new LibraryFile();
+            lib.file = readString(buf);
+            lib.checksum = readLong(buf);
+            lib.size = readLong(buf);
+            lib.os = readEnum(buf, OS.values());
+            lib.modified = readLong(buf);
+            lib.algorithm = readEnum(buf, HashAlgorithm.values());
+            lib.bundle = readString(buf);
+            lib.gzipSize = readLong(buf);
+            byte lazy = buf.get();
+            lib.lazy = lazy == -1 ? null : lazy == 1;
+            String packages = readString(buf);
+            lib.packages = packages == null ? null : new ArrayList<>(Arrays.asList(packages.split(" ")));
+            lib.defaultAlgorithm = manifest.algorithm;
+            lib.manifest = manifest;
+            int deltas = buf.getInt();
+            for (int d = 0; d < deltas; d++)
+                lib.deltas.add(new DeltaFile(readString(buf), readLong(buf), readLong(buf)));
+            manifest.files.add(lib);
+        }
+
+        int mirrors = buf.getInt();
+        for (int i = 0; i < mirrors; i++)
+            manifest.mirrors.add(URI.create(readString(buf)));
+        return manifest;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length == -1)
+            return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeLong(value);
+    }
+
+    private static Long readLong(ByteBuffer buf) {
+        return buf.get() != 0 ? buf.getLong() : null;
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(ByteBuffer buf, E[] values) {
+        int ordinal = buf.get();
+        return ordinal == -1 ? null : values[ordinal];
+    }
+}
@@ -0,0 +1,203 @@
+package fxlauncher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the application in a child JVM with an AppCDS archive for the installed set of libraries.
+ *
+ * The first launch after the libraries changed records the classes the application loads into a
+ * dynamic archive when it exits, using <code>-XX:ArchiveClassesAtExit</code>. Later launches map that
+ * archive with <code>-XX:SharedArchiveFile</code>, so the classes are already parsed and verified.
+ * The archive is bound to the manifest files it was created for and is discarded when they change.
+ *
+ * Class data sharing is enabled with <code>&lt;classDataSharing&gt;true&lt;/classDataSharing&gt;</code> in the
+ * manifest and requires the background update mode, because the libraries must not change while the
+ * child JVM is running. Dynamic archives need Java 13 or newer, older JVMs run the application in-process as before.
+ * The child marks a file once it reaches the launcher. If it exits without doing so, because it failed to start with
+ * the forwarded options or the archive, the archive is discarded and the application is started in-process.
+ */
+public class ClassDataSharing {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    /**
+     * Set in the child JVM, so it does not try to relaunch itself again.
+     */
+    public static final String CHILD_PROPERTY = "fxlauncher.cds";
+
+    /**
+     * The file the child JVM creates when it reaches the launcher.
+     */
+    private static final String STARTED_PROPERTY = "fxlauncher.cds.started";
+
+    /**
+     * Needed by the launcher to register the application parameters when JavaFX is on the module path.
+     */
+    private static final String PARAMETERS_EXPORT = "--add-exports=javafx.graphics/com.sun.javafx.application=ALL-UNNAMED";
+
+    /**
+     * Relaunch the application in a child JVM using the class data sharing archive, if the
+     * manifest asks for it and the JVM supports it.
+     *
+     * @param args the command line arguments to pass on to the child
+     * @return the exit code of the child JVM, or -1 if the application should be started in this JVM
+     */
+    public static int relaunch(String[] args) {
+        if (System.getProperty(CHILD_PROPERTY) != null) {
+            markStarted();
+            return -1;
+        }
+        if (!isSupported())
+            return -1;
+
+        try {
+            FXManifest manifest = BackgroundUpdater.activatePending(new ManifestLoader().loadLocal());
+            if (!manifest.classDataSharing || manifest.updateMode != UpdateMode.background || !manifest.cached || manifest.updateNeeded())
+                return -1;
+
+            Path archive = manifest.getClassDataArchivePath();
+            Path archiveId = archive.resolveSibling(archive.getFileName() + ".id");
+            Path started = archive.resolveSibling(archive.getFileName() + ".started");
+            String id = archiveId(manifest);
+
+            boolean dump = !Files.exists(archive) || !Files.exists(archiveId)
+                    || !id.equals(new String(Files.readAllBytes(archiveId), StandardCharsets.UTF_8));
+            if (dump) {
+                Files.deleteIfExists(archiveId);
+                Files.deleteIfExists(archive);
+            }
+
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            List<String> inputArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+            inputArguments.stream()
+                    .filter(ClassDataSharing::isForwarded)
+                    .forEach(command::add);
+            if (inputArguments.stream().anyMatch(arg -> arg.startsWith("--module-path")) && !inputArguments.contains(PARAMETERS_EXPORT))
+                command.add(PARAMETERS_EXPORT);
+            command.add(dump ? "-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath() : "-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+            command.add(String.format("-D%s=%s", CHILD_PROPERTY, dump ? "dump" : "share"));
+            command.add(String.format("-D%s=%s", STARTED_PROPERTY, started.toAbsolutePath()));
+            command.add("-cp");
+            command.add(classPath(manifest));
+            command.add(Launcher.class.getName());
+            command.addAll(Arrays.asList(args));
+
+            log.info(String.format("Starting application with class data sharing archive %s (%s)", archive, dump ? "recording" : "using"));
+            Files.deleteIfExists(started);
+            int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+
+            if (!Files.deleteIfExists(started)) {
+                log.warning(String.format("Application with class data sharing exited with %d before starting, starting it in-process", exitCode));
+                invalidate(manifest);
+                return -1;
+            }
+
+            if (dump && exitCode == 0 && Files.exists(archive))
+                Files.write(archiveId, id.getBytes(StandardCharsets.UTF_8));
+
+            return exitCode;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "Unable to start application with class data sharing, starting it in-process", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Only system properties, heap and stack sizes, module options and <code>-XX:</code> options are passed on
+     * to the child, so it finds JavaFX and other modules where the launcher JVM found them. Agents and debugger
+     * options are left out, because the child would try to load the agent a second time or to listen on the debug
+     * port the launcher JVM already uses.
+     */
+    static boolean isForwarded(String arg) {
+        if (arg.startsWith("-XX:"))
+            return !arg.startsWith("-XX:SharedArchiveFile") && !arg.startsWith("-XX:ArchiveClassesAtExit");
+        if (arg.startsWith("-D"))
+            return !arg.startsWith("-D" + CHILD_PROPERTY);
+        return arg.startsWith("-Xmx") || arg.startsWith("-Xms") || arg.startsWith("-Xss")
+                || arg.startsWith("--module-path=") || arg.startsWith("--upgrade-module-path=") || arg.startsWith("--add-modules=")
+                || arg.startsWith("--add-exports=") || arg.startsWith("--add-opens=") || arg.startsWith("--add-reads=");
+    }
+
+    /**
+     * Tell the launcher JVM that this child JVM started with the options and the archive it was given.
+     */
+    private static void markStarted() {
+        String started = System.getProperty(STARTED_PROPERTY);
+        if (started == null)
+            return;
+        try {
+            Files.write(Paths.get(started), new byte[0]);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to create %s", started), ex);
+        }
+    }
+
+    /**
+     * Discard the archive, because the libraries it was created for have changed.
+     */
+    public static void invalidate(FXManifest manifest) {
+        Path archive = manifest.getClassDataArchivePath();
+        try {
+            Files.deleteIfExists(archive.resolveSibling(archive.getFileName() + ".id"));
+            Files.deleteIfExists(archive);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to delete class data sharing archive %s", archive), ex);
+        }
+    }
+
+    /**
+     * Dynamic archives were added in Java 13.
+     */
+    private static boolean isSupported() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        try {
+            return !version.startsWith("1.") && Integer.parseInt(version.split("\\.")[0]) >= 13;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * The launcher itself, the class path of the launcher JVM and the platform libraries. The libraries have to
+     * be on the class path of the JVM, because only classes loaded by the built-in class loaders are archived.
+     */
+    private static String classPath(FXManifest manifest) throws Exception {
+        Set<String> entries = new LinkedHashSet<>();
+        entries.add(Paths.get(Launcher.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator))
+            if (!entry.isEmpty())
+                entries.add(Paths.get(entry).toAbsolutePath().toString());
+        manifest.files.stream()
+                .filter(LibraryFile::loadForCurrentPlatform)
+                .map(lib -> lib.toPath().toAbsolutePath().toString())
+                .forEach(entries::add);
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Identifies the libraries and the JVM an archive was created for.
+     */
+    private static String archiveId(FXManifest manifest) {
+        return System.getProperty("java.vm.version") + "\n" + System.getProperty("java.home") + "\n" + manifest.files.stream()
+                .filter(LibraryFile::loadForCurrentPlatform)
+                .map(lib -> lib.file + ":" + lib.checksum)
+                .collect(Collectors.joining("\n"));
+    }
+}
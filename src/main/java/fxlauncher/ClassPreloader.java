@@ -0,0 +1,240 @@
+package fxlauncher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the classes the application needs at startup on worker threads, while the launcher window is showing
+ * and the launcher is waiting for the network or the user, instead of one by one after the application starts.
+ *
+ * The classes are recorded the first time a set of library files is launched: the class loader remembers every
+ * class it defines until the application shows its primary stage, and the list is saved next to the cached manifest
+ * as <code>&lt;launchClass&gt;.classes</code>. On the next launch of the same files, a class loader for the installed
+ * files is created on a worker thread, because building its package index opens every jar, and the recorded classes
+ * are loaded through it in parallel. The classes are loaded and linked, which includes bytecode verification, but
+ * not initialized, so no application code runs early. There is no API to link a class on its own, so the preloader
+ * asks for its declared constructors, which makes HotSpot link the class first. Other JVMs may leave the linking
+ * for later, which still saves reading and defining the classes.
+ * If the update replaces any files, the preloaded class loader is closed and the application gets a new one.
+ */
+public class ClassPreloader {
+    private static final Logger log = Logger.getLogger("Launcher");
+    private static final String HEADER = "# fxlauncher startup classes v1";
+    private static final int MAX_THREADS = 4;
+
+    private final List<LibraryFile> files;
+    private final CompletableFuture<URLClassLoader> classLoader;
+    private final ExecutorService pool;
+    private volatile boolean cancelled;
+
+    private ClassPreloader(FXManifest manifest, List<String> classes) {
+        this.files = platformFiles(manifest);
+
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fxlauncher-preload");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.classLoader = CompletableFuture.supplyAsync(() -> IndexedClassLoader.create(manifest), pool);
+
+        // The workers take the classes in the order they were recorded, so the first classes the application needs are loaded first
+        long start = System.nanoTime();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                URLClassLoader loader;
+                try {
+                    loader = classLoader.join();
+                } catch (CompletionException | CancellationException ex) {
+                    return;
+                }
+                int position;
+                while (!cancelled && (position = next.getAndIncrement()) < classes.size()) {
+                    try {
+                        Class<?> type = Class.forName(classes.get(position), false, loader);
+                        loaded.incrementAndGet();
+                        type.getDeclaredConstructors();
+                    } catch (ClassNotFoundException | LinkageError ex) {
+                        log.log(Level.FINE, String.format("Unable to preload %s", classes.get(position)), ex);
+                    }
+                }
+                if (running.decrementAndGet() == 0 && !cancelled)
+                    log.info(String.format("Preloaded %d of %d startup classes in %d ms", loaded.get(), classes.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            });
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Start preloading the recorded startup classes of the installed files.
+     *
+     * @return the preloader, or null if no classes were recorded for the files of the manifest
+     */
+    public static ClassPreloader start(FXManifest manifest) {
+        if (!manifest.cached)
+            return null;
+
+        List<String> classes = load(manifest);
+        if (classes == null || classes.isEmpty())
+            return null;
+
+        try {
+            return new ClassPreloader(manifest, classes);
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Unable to preload startup classes", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Check if the preloaded class loader can be used for the given manifest, which is the case when it has
+     * the same files for this platform and the preloader was not cancelled.
+     */
+    public boolean matches(FXManifest manifest) {
+        return !cancelled && files.equals(platformFiles(manifest));
+    }
+
+    /**
+     * The class loader the classes are preloaded through, to be used for the application. Waits until the worker
+     * has created it.
+     *
+     * @return the class loader, or null if it could not be created
+     */
+    public URLClassLoader getClassLoader() {
+        try {
+            return classLoader.join();
+        } catch (CompletionException | CancellationException ex) {
+            log.log(Level.WARNING, "Unable to create preloading class loader", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stop preloading and close the class loader, so the files it opened can be replaced. This does not wait for
+     * the workers, because it is called on the JavaFX thread. A worker that is still loading a class fails on the
+     * closed jar, and a class loader that is still being created is closed as soon as it is ready.
+     */
+    public void cancel() {
+        cancelled = true;
+        pool.shutdownNow();
+        classLoader.thenAccept(loader -> {
+            try {
+                loader.close();
+            } catch (IOException ex) {
+                log.log(Level.FINE, "Unable to close preloading class loader", ex);
+            }
+        });
+    }
+
+    /**
+     * Start recording the startup classes of the application, unless they were already recorded for these files.
+     */
+    public static void record(URLClassLoader classLoader, FXManifest manifest) {
+        if (classLoader instanceof IndexedClassLoader && load(manifest) == null)
+            ((IndexedClassLoader) classLoader).startRecording();
+    }
+
+    /**
+     * Stop recording and save the recorded classes in the background, because the startup is complete.
+     */
+    public static void save(URLClassLoader classLoader, FXManifest manifest) {
+        if (!(classLoader instanceof IndexedClassLoader))
+            return;
+
+        List<String> classes = ((IndexedClassLoader) classLoader).stopRecording();
+        if (classes == null)
+            return;
+
+        Thread writer = new Thread(() -> write(manifest, classes), "fxlauncher-startup-classes");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Read the recorded classes for the files of the manifest.
+     *
+     * @return the class names in the order they were loaded, or null if none were recorded for these files
+     */
+    static List<String> load(FXManifest manifest) {
+        Path path = manifest.getStartupClassesPath();
+        if (!Files.exists(path))
+            return null;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()) || !filesId(manifest).equals(reader.readLine()))
+                return null;
+
+            List<String> classes = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null)
+                if (!line.isEmpty())
+                    classes.add(line);
+            return classes;
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Ignoring unreadable startup classes %s", path), ex);
+            return null;
+        }
+    }
+
+    private static void write(FXManifest manifest, List<String> classes) {
+        Path path = manifest.getStartupClassesPath();
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                writer.write(filesId(manifest));
+                writer.newLine();
+                for (String name : classes) {
+                    writer.write(name);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.info(String.format("Recorded %d startup classes in %s", classes.size(), path));
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to save startup classes %s", path), ex);
+        }
+    }
+
+    /**
+     * Identifies the files the classes were recorded for, so a list is not used for other versions of the files.
+     */
+    private static String filesId(FXManifest manifest) {
+        return String.format("files\t%08x", platformFiles(manifest).hashCode());
+    }
+
+    private static List<LibraryFile> platformFiles(FXManifest manifest) {
+        return manifest.files.stream()
+                .filter(LibraryFile::loadForCurrentPlatform)
+                .collect(Collectors.toList());
+    }
+}
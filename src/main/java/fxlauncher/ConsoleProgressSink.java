@@ -0,0 +1,43 @@
+package fxlauncher;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints progress snapshots as lines of text, at most one per interval so the output stays readable
+ * in a log file. The last snapshot, with all bytes written, is always printed.
+ */
+public class ConsoleProgressSink implements ProgressSink {
+    private final PrintStream out;
+    private final long intervalNanos;
+    private long lastPrinted;
+    private boolean printed;
+
+    public ConsoleProgressSink(PrintStream out, long interval, TimeUnit unit) {
+        this.out = out;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    public synchronized void publish(DownloadProgress progress) {
+        long now = System.nanoTime();
+        boolean done = progress.getWritten() >= progress.getTotal();
+        if (printed && !done && now - lastPrinted < intervalNanos)
+            return;
+
+        lastPrinted = now;
+        printed = true;
+        out.println(format(progress));
+    }
+
+    static String format(DownloadProgress progress) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%3.0f%% %.1f of %.1f MB",
+                progress.getProgress() * 100, progress.getWritten() / 1024d / 1024d, progress.getTotal() / 1024d / 1024d));
+        if (progress.getBytesPerSecond() > 0)
+            line.append(String.format(Locale.ROOT, " at %.2f MB/s", progress.getBytesPerSecond() / 1024d / 1024d));
+        long remaining = progress.getSecondsRemaining();
+        if (remaining >= 0 && progress.getWritten() < progress.getTotal())
+            line.append(String.format(Locale.ROOT, ", %d:%02d left", remaining / 60, remaining % 60));
+        return line.toString();
+    }
+}
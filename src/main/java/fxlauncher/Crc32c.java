@@ -0,0 +1,79 @@
+package fxlauncher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) using the slicing-by-8 table method. The JDK only ships an implementation
+ * from Java 9 on, and {@link HashAlgorithm#crc32c} prefers that one when it is available because
+ * it uses the CRC32 instruction of the processor.
+ */
+public class Crc32c implements Checksum {
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++)
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            TABLES[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++)
+            for (int t = 1; t < 8; t++)
+                TABLES[t][n] = (TABLES[t - 1][n] >>> 8) ^ TABLES[0][TABLES[t - 1][n] & 0xff];
+    }
+
+    private int crc = 0xffffffff;
+
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xff];
+    }
+
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int[][] t = TABLES;
+        while (len >= 8) {
+            int lo = c ^ ((b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24);
+            int hi = (b[off + 4] & 0xff) | (b[off + 5] & 0xff) << 8 | (b[off + 6] & 0xff) << 16 | (b[off + 7] & 0xff) << 24;
+            c = t[7][lo & 0xff] ^ t[6][(lo >>> 8) & 0xff] ^ t[5][(lo >>> 16) & 0xff] ^ t[4][lo >>> 24]
+                    ^ t[3][hi & 0xff] ^ t[2][(hi >>> 8) & 0xff] ^ t[1][(hi >>> 16) & 0xff] ^ t[0][hi >>> 24];
+            off += 8;
+            len -= 8;
+        }
+        while (len-- > 0)
+            c = (c >>> 8) ^ t[0][(c ^ b[off++]) & 0xff];
+        crc = c;
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of the buffer, without copying them to the heap.
+     */
+    public void update(ByteBuffer buffer) {
+        ByteBuffer buf = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int c = crc;
+        int[][] t = TABLES;
+        int pos = 0;
+        int limit = buf.limit();
+        while (limit - pos >= 8) {
+            int lo = c ^ buf.getInt(pos);
+            int hi = buf.getInt(pos + 4);
+            c = t[7][lo & 0xff] ^ t[6][(lo >>> 8) & 0xff] ^ t[5][(lo >>> 16) & 0xff] ^ t[4][lo >>> 24]
+                    ^ t[3][hi & 0xff] ^ t[2][(hi >>> 8) & 0xff] ^ t[1][(hi >>> 16) & 0xff] ^ t[0][hi >>> 24];
+            pos += 8;
+        }
+        while (pos < limit)
+            c = (c >>> 8) ^ t[0][(c ^ buf.get(pos++)) & 0xff];
+        crc = c;
+        buffer.position(buffer.limit());
+    }
+
+    public long getValue() {
+        return ~crc & 0xffffffffL;
+    }
+
+    public void reset() {
+        crc = 0xffffffff;
+    }
+}
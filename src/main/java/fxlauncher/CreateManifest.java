@@ -2,43 +2,393 @@ package fxlauncher;
 
 import starbender.model.meta.MetaData;
 
-import javax.xml.bind.JAXB;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class CreateManifest {
 
+    /**
+     * Deltas that are not at least this much smaller than the full file are not published.
+     */
+    private static final double MAX_DELTA_RATIO = 0.5;
+
+    /**
+     * Bundles are filled up to this size, so a failed bundle download does not cost too much.
+     */
+    private static final long MAX_BUNDLE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Compressed copies that are not at least this much smaller than the file are not published.
+     */
+    private static final double MAX_GZIP_RATIO = 0.9;
+
     public static void main(String[] args) throws IOException {
         URI baseURI = URI.create(args[0]);
         String launchClass = args[1];
         Path appPath = Paths.get(args[2]);
-        FXManifest manifest = create(baseURI, launchClass, appPath);
 
-        if (args.length == 4)
-            manifest.parameters = args[3];
+        String parameters = null;
+        List<Path> deltaSources = new ArrayList<>();
+        boolean incremental = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        HashAlgorithm algorithm = null;
+        List<URI> mirrors = new ArrayList<>();
+        long bundleBelow = 0;
+        boolean gzip = false;
+        List<String> lazy = new ArrayList<>();
+
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("--delta-from="))
+                deltaSources.add(Paths.get(args[i].substring("--delta-from=".length())));
+            else if (args[i].equals("--incremental"))
+                incremental = true;
+            else if (args[i].startsWith("--threads="))
+                threads = Integer.parseInt(args[i].substring("--threads=".length()));
+            else if (args[i].startsWith("--algorithm="))
+                algorithm = HashAlgorithm.of(args[i].substring("--algorithm=".length()));
+            else if (args[i].startsWith("--mirror="))
+                mirrors.add(URI.create(args[i].substring("--mirror=".length())));
+            else if (args[i].startsWith("--bundle-below="))
+                bundleBelow = Long.parseLong(args[i].substring("--bundle-below=".length()));
+            else if (args[i].equals("--gzip"))
+                gzip = true;
+            else if (args[i].startsWith("--lazy="))
+                lazy.add(args[i].substring("--lazy=".length()));
+            else
+                parameters = args[i];
+        }
+
+        Path manifestPath = appPath.resolve("app.xml");
+        FXManifest previous = incremental && Files.exists(manifestPath) ? ManifestXml.read(manifestPath) : null;
+
+        FXManifest manifest = create(baseURI, launchClass, appPath, previous, threads, algorithm);
+
+        if (parameters != null)
+            manifest.parameters = parameters;
 
-        JAXB.marshal(manifest, appPath.resolve("app.xml").toFile());
+        manifest.mirrors.addAll(mirrors);
+
+        markLazy(manifest, appPath, lazy);
+
+        if (!deltaSources.isEmpty())
+            createDeltas(manifest, appPath, deltaSources);
+
+        if (gzip)
+            createCompressed(manifest, appPath);
+
+        if (bundleBelow > 0)
+            createBundles(manifest, appPath, bundleBelow, gzip);
+
+        ManifestXml.write(manifest, manifestPath);
     }
 
     public static FXManifest create(URI baseURI, String launchClass, Path appPath) throws IOException {
+        return create(baseURI, launchClass, appPath, null, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Create a manifest for the jars in the app directory. The checksums are calculated in parallel.
+     *
+     * @param previous the manifest of the previous run, or null. Entries for jars with the same size and
+     *                 modification time as recorded in the previous manifest are reused without reading the jar,
+     *                 provided they were checksummed with the same algorithm.
+     * @param threads the number of threads used to calculate checksums
+     * @param algorithm the checksum algorithm, or null for Adler32 which every launcher version understands
+     */
+    public static FXManifest create(URI baseURI, String launchClass, Path appPath, FXManifest previous, int threads, HashAlgorithm algorithm) throws IOException {
         FXManifest manifest = new FXManifest();
         manifest.uri = baseURI;
         manifest.launchClass = launchClass;
+        manifest.algorithm = algorithm;
         manifest.majorVersion = MetaData.instance.MajorVersion;
         manifest.minorVersion = MetaData.instance.MinorVersion;
         manifest.buildVersion = MetaData.instance.Build;
 
+        List<Path> jars = new ArrayList<>();
         Files.walkFileTree(appPath, new SimpleFileVisitor<Path>() {
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 if (!Files.isDirectory(file) && file.toString().endsWith(".jar") && !file.getFileName().toString().startsWith("fxlauncher"))
-                    manifest.files.add(new LibraryFile(appPath, file));
+                    jars.add(file);
                 return FileVisitResult.CONTINUE;
             }
         });
 
+        Map<String, LibraryFile> reusable = new HashMap<>();
+        if (previous != null)
+            for (LibraryFile lib : previous.files)
+                reusable.put(lib.file, lib);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            manifest.files.addAll(pool.submit(() -> jars.parallelStream()
+                    .map(jar -> libraryFile(appPath, jar, reusable, algorithm))
+                    .collect(Collectors.toList())).get());
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted while creating manifest");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            throw new IOException(ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
         return manifest;
     }
-    
+
+    private static LibraryFile libraryFile(Path appPath, Path jar, Map<String, LibraryFile> reusable, HashAlgorithm algorithm) {
+        try {
+            LibraryFile previous = reusable.get(appPath.relativize(jar).toString());
+            if (previous != null && previous.modified != null && previous.size == Files.size(jar)
+                    && previous.modified == Files.getLastModifiedTime(jar).toMillis()
+                    && previous.getAlgorithm() == (algorithm != null ? algorithm : HashAlgorithm.adler32)) {
+                previous.deltas.removeIf(delta -> !Files.exists(appPath.resolve(delta.file)));
+                // Bundles and compressed copies are only published when asked for in this run
+                previous.bundle = null;
+                previous.gzipSize = null;
+                previous.defaultAlgorithm = algorithm;
+                return previous;
+            }
+            return new LibraryFile(appPath, jar, algorithm);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Create binary deltas from earlier versions of the application. Each source directory holds the files
+     * of an earlier release laid out like the app directory. For every library that changed since that release,
+     * a delta is written to the <code>deltas</code> folder of the app directory and referenced from the manifest.
+     *
+     * @param manifest the manifest for the new version
+     * @param appPath the app directory of the new version
+     * @param sources app directories of earlier versions
+     */
+    public static void createDeltas(FXManifest manifest, Path appPath, List<Path> sources) throws IOException {
+        Path deltaPath = appPath.resolve("deltas");
+
+        for (LibraryFile lib : manifest.files) {
+            for (Path source : sources) {
+                Path previous = source.resolve(lib.file);
+                if (!Files.exists(previous))
+                    continue;
+
+                long previousChecksum = lib.hash(previous);
+                if (previousChecksum == lib.checksum || lib.findDelta(previousChecksum) != null)
+                    continue;
+
+                Path delta = deltaPath.resolve(String.format("%s.%d.delta", lib.file, previousChecksum));
+                Files.createDirectories(delta.getParent());
+                try (OutputStream output = Files.newOutputStream(delta)) {
+                    BinaryDelta.create(previous, appPath.resolve(lib.file), output);
+                }
+
+                long size = Files.size(delta);
+                if (size < lib.size * MAX_DELTA_RATIO) {
+                    lib.deltas.add(new DeltaFile(appPath.relativize(delta).toString().replace('\\', '/'), previousChecksum, size));
+                } else {
+                    Files.delete(delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Group the libraries smaller than the given size into uncompressed zip archives in the <code>bundles</code>
+     * folder of the app directory, so a new installation fetches them with a few requests instead of one each.
+     * Libraries for different platforms are bundled separately. A bundle is named after the checksums of its
+     * contents, so a client can never get a bundle with other versions of the files than its manifest expects.
+     *
+     * @param manifest the manifest for the new version
+     * @param appPath the app directory of the new version
+     * @param smallerThan the size in bytes below which a library is bundled
+     */
+    public static void createBundles(FXManifest manifest, Path appPath, long smallerThan) throws IOException {
+        createBundles(manifest, appPath, smallerThan, false);
+    }
+
+    /**
+     * Group the libraries smaller than the given size into bundles, optionally compressing the entries.
+     *
+     * @param compress true to deflate the entries, which every launcher that understands bundles can read
+     */
+    public static void createBundles(FXManifest manifest, Path appPath, long smallerThan, boolean compress) throws IOException {
+        Map<OS, List<LibraryFile>> small = new HashMap<>();
+        for (LibraryFile lib : manifest.files) {
+            lib.bundle = null;
+            if (lib.size < smallerThan)
+                small.computeIfAbsent(lib.os, os -> new ArrayList<>()).add(lib);
+        }
+
+        for (List<LibraryFile> libs : small.values()) {
+            libs.sort(Comparator.comparing(lib -> lib.file));
+            List<LibraryFile> bundle = new ArrayList<>();
+            long size = 0;
+            for (LibraryFile lib : libs) {
+                if (!bundle.isEmpty() && size + lib.size > MAX_BUNDLE_SIZE) {
+                    writeBundle(bundle, appPath, compress);
+                    bundle.clear();
+                    size = 0;
+                }
+                bundle.add(lib);
+                size += lib.size;
+            }
+            writeBundle(bundle, appPath, compress);
+        }
+    }
+
+    private static void writeBundle(List<LibraryFile> libs, Path appPath, boolean compress) throws IOException {
+        // A single file is fetched just as fast on its own
+        if (libs.size() < 2)
+            return;
+
+        XxHash64 hash = new XxHash64();
+        for (LibraryFile lib : libs) {
+            byte[] key = String.format("%s:%s:%d\n", lib.file, lib.getAlgorithm(), lib.checksum).getBytes(StandardCharsets.UTF_8);
+            hash.update(key, 0, key.length);
+        }
+        String name = String.format("bundles/%016x.zip", hash.getValue());
+
+        Path bundle = appPath.resolve(name);
+        Files.createDirectories(bundle.getParent());
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(bundle))) {
+            if (compress)
+                zip.setLevel(Deflater.BEST_COMPRESSION);
+            else
+                zip.setMethod(ZipOutputStream.STORED);
+            for (LibraryFile lib : libs) {
+                Path file = appPath.resolve(lib.file);
+                ZipEntry entry = new ZipEntry(lib.file);
+                if (!compress) {
+                    CRC32 crc = new CRC32();
+                    crc.update(Files.readAllBytes(file));
+                    entry.setSize(lib.size);
+                    entry.setCompressedSize(lib.size);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+
+        for (LibraryFile lib : libs)
+            lib.bundle = name;
+    }
+
+    /**
+     * Mark the libraries matching any of the given glob patterns as lazy, and list their packages in the manifest
+     * so the launcher can start without them and download them when one of their packages is first used.
+     * The patterns are matched against the path of the library relative to the app directory, for example
+     * <code>reporting/*.jar</code>. Libraries that do not match are no longer lazy.
+     *
+     * @param manifest the manifest for the new version
+     * @param appPath the app directory of the new version
+     * @param patterns glob patterns for the lazy libraries
+     */
+    public static void markLazy(FXManifest manifest, Path appPath, List<String> patterns) throws IOException {
+        List<PathMatcher> matchers = patterns.stream()
+                .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+                .collect(Collectors.toList());
+
+        for (LibraryFile lib : manifest.files) {
+            Path file = Paths.get(lib.file);
+            if (matchers.stream().anyMatch(matcher -> matcher.matches(file))) {
+                lib.lazy = true;
+                lib.packages = PackageIndex.packagesOf(appPath.resolve(lib.file));
+            } else {
+                lib.lazy = null;
+                lib.packages = null;
+            }
+        }
+    }
+
+    /**
+     * Publish a gzip compressed copy of every library next to it, with a <code>.gz</code> suffix, so launchers
+     * transfer fewer bytes. Jars built without compression and resources often shrink considerably. Copies that
+     * save less than a tenth of the size are not published. A copy left by an earlier run is kept when the
+     * CRC-32 and size in its gzip trailer match the library.
+     *
+     * @param manifest the manifest for the new version
+     * @param appPath the app directory of the new version
+     */
+    public static void createCompressed(FXManifest manifest, Path appPath) throws IOException {
+        for (LibraryFile lib : manifest.files) {
+            Path compressed = appPath.resolve(lib.file + ".gz");
+            if (!isCompressedCopy(compressed, appPath.resolve(lib.file))) {
+                try (OutputStream output = new BestGZIPOutputStream(Files.newOutputStream(compressed))) {
+                    Files.copy(appPath.resolve(lib.file), output);
+                }
+            }
+
+            long size = Files.size(compressed);
+            if (size < lib.size * MAX_GZIP_RATIO) {
+                lib.gzipSize = size;
+            } else {
+                lib.gzipSize = null;
+                Files.delete(compressed);
+            }
+        }
+    }
+
+    private static boolean isCompressedCopy(Path compressed, Path file) throws IOException {
+        if (!Files.exists(compressed) || Files.size(compressed) < 18)
+            return false;
+
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(compressed, StandardOpenOption.READ)) {
+            long position = channel.size() - trailer.capacity();
+            while (trailer.hasRemaining())
+                if (channel.read(trailer, position + trailer.position()) == -1)
+                    break;
+        }
+        trailer.flip();
+        long crc = trailer.getInt() & 0xffffffffL;
+        long size = trailer.getInt() & 0xffffffffL;
+        if (size != (Files.size(file) & 0xffffffffL))
+            return false;
+
+        CRC32 checksum = new CRC32();
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buf = new byte[65536];
+            int read;
+            while ((read = input.read(buf)) > -1)
+                checksum.update(buf, 0, read);
+        }
+        return checksum.getValue() == crc;
+    }
+
+    /**
+     * A gzip stream that compresses as well as it can, since a copy is compressed once and downloaded many times.
+     */
+    private static class BestGZIPOutputStream extends GZIPOutputStream {
+        BestGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, 65536);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+
 }
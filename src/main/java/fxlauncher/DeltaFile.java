@@ -0,0 +1,43 @@
+package fxlauncher;
+
+import javax.xml.bind.annotation.XmlAttribute;
+
+/**
+ * A binary delta published next to a library file. Applying it to the version of the
+ * library with the checksum given in <code>from</code> produces the version in the manifest.
+ */
+public class DeltaFile {
+    @XmlAttribute
+    String file;
+    @XmlAttribute
+    Long from;
+    @XmlAttribute
+    Long size;
+
+    public DeltaFile() {
+    }
+
+    public DeltaFile(String file, Long from, Long size) {
+        this.file = file;
+        this.from = from;
+        this.size = size;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DeltaFile that = (DeltaFile) o;
+
+        if (!file.equals(that.file)) return false;
+        if (!from.equals(that.from)) return false;
+        return size.equals(that.size);
+    }
+
+    public int hashCode() {
+        int result = file.hashCode();
+        result = 31 * result + from.hashCode();
+        result = 31 * result + size.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,680 @@
+package fxlauncher;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Checksum;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Downloads library files using a bounded pool of worker threads. The number of
+ * simultaneous connections to a single host is limited separately by the {@link HttpSession},
+ * so one slow host cannot occupy the whole pool, and its connections are kept alive and reused
+ * from one file to the next. A file that fails is retried a number of times and is
+ * then reported back to the caller, without aborting the other downloads.
+ *
+ * Files are downloaded to a staging path next to the target and verified while they are
+ * written. They are only moved into place by {@link #commit(List, VerificationIndex)}.
+ * When the manifest publishes a delta from the version already on disk, the new version is
+ * rebuilt from the delta instead of being downloaded in full.
+ *
+ * When the manifest lists mirrors, each file is fetched from the location picked by the
+ * {@link MirrorSelector}, and a failed attempt moves on to the next location.
+ *
+ * Files with a compressed copy in the manifest are fetched compressed, and other files are requested with
+ * <code>Accept-Encoding: gzip</code>. Either way the file is decompressed as it arrives, and the size and checksum
+ * are verified on the decompressed bytes.
+ *
+ * Small files that the manifest publishes in a bundle are fetched together by streaming the bundle, when enough
+ * of the bundle is needed to be worth it. Every file in the bundle is verified on its own, and files the bundle
+ * could not deliver are downloaded individually.
+ */
+public class DownloadEngine {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    /**
+     * Direct buffers for the transfer loop, so the checksum and the staging file are fed from the same buffer
+     * without another copy. An HTTP response is still read through a heap array inside the channel that wraps
+     * its stream, and it cannot skip the heap with transferFrom because it is hashed as it arrives. Only files
+     * from a <code>file:</code> location are copied without passing through the heap, with transferTo.
+     */
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(65536));
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+    private final FXManifest manifest;
+    private final int threads;
+    private final int retries;
+    private final HttpSession session;
+    private final MirrorSelector mirrors;
+
+    public DownloadEngine(FXManifest manifest) {
+        this(manifest, new HttpSession(manifest));
+    }
+
+    /**
+     * @param session the session of the update, which limits and reuses the connections to each host
+     */
+    public DownloadEngine(FXManifest manifest, HttpSession session) {
+        this.manifest = manifest;
+        this.session = session;
+        this.mirrors = new MirrorSelector(manifest, session);
+        this.threads = Math.max(1, manifest.downloadThreads);
+        this.retries = Math.max(0, manifest.downloadRetries);
+    }
+
+    /**
+     * Download the given files in parallel.
+     *
+     * @param files    the files to download
+     * @param progress receives the number of bytes written as they arrive. If an attempt fails,
+     *                 the bytes it reported are taken back by passing a negative count.
+     * @return the files that could not be downloaded, or an empty list if all of them succeeded
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+     */
+    public List<LibraryFile> download(List<LibraryFile> files, LongConsumer progress) throws InterruptedException {
+        List<LibraryFile> failed = new ArrayList<>();
+        if (files.isEmpty())
+            return failed;
+
+        Map<String, List<LibraryFile>> bundles = bundlesToFetch(files);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()), new DownloadThreadFactory());
+        try {
+            Map<LibraryFile, Future<Boolean>> results = new LinkedHashMap<>();
+            Map<String, Future<List<LibraryFile>>> bundleResults = new LinkedHashMap<>();
+            for (Map.Entry<String, List<LibraryFile>> bundle : bundles.entrySet())
+                bundleResults.put(bundle.getKey(), pool.submit(() -> downloadBundle(bundle.getKey(), bundle.getValue(), progress)));
+            for (LibraryFile lib : files)
+                if (lib.bundle == null || !bundles.containsKey(lib.bundle))
+                    results.put(lib, pool.submit(() -> downloadWithRetry(lib, progress)));
+
+            for (Map.Entry<String, Future<List<LibraryFile>>> bundle : bundleResults.entrySet()) {
+                List<LibraryFile> missing;
+                try {
+                    missing = bundle.getValue().get();
+                } catch (ExecutionException ex) {
+                    log.log(Level.WARNING, String.format("Failed to download bundle %s", bundle.getKey()), ex.getCause());
+                    missing = bundles.get(bundle.getKey());
+                }
+                for (LibraryFile lib : missing)
+                    results.put(lib, pool.submit(() -> downloadWithRetry(lib, progress)));
+            }
+
+            for (Map.Entry<LibraryFile, Future<Boolean>> result : results.entrySet()) {
+                try {
+                    if (!result.getValue().get())
+                        failed.add(result.getKey());
+                } catch (ExecutionException ex) {
+                    log.log(Level.WARNING, String.format("Failed to download %s", result.getKey().file), ex.getCause());
+                    failed.add(result.getKey());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return failed;
+    }
+
+    /**
+     * The bundles worth fetching for the given files, with the files each of them should deliver. A bundle is
+     * only used when at least two of its files and at least half of its bytes are needed.
+     */
+    private Map<String, List<LibraryFile>> bundlesToFetch(List<LibraryFile> files) {
+        Map<String, List<LibraryFile>> needed = new LinkedHashMap<>();
+        for (LibraryFile lib : files)
+            if (lib.bundle != null)
+                needed.computeIfAbsent(lib.bundle, bundle -> new ArrayList<>()).add(lib);
+
+        Map<String, Long> bundleSizes = new HashMap<>();
+        for (LibraryFile lib : manifest.files)
+            if (lib.bundle != null)
+                bundleSizes.merge(lib.bundle, lib.size, Long::sum);
+
+        needed.entrySet().removeIf(bundle -> bundle.getValue().size() < 2
+                || bundle.getValue().stream().mapToLong(lib -> lib.size).sum() * 2 < bundleSizes.get(bundle.getKey()));
+        return needed;
+    }
+
+    /**
+     * Stream a bundle and stage the wanted files it contains. Any problem with the bundle is logged,
+     * and the files it did not deliver are returned so they can be downloaded individually.
+     */
+    private List<LibraryFile> downloadBundle(String bundle, List<LibraryFile> libs, LongConsumer progress) throws InterruptedIOException {
+        Map<String, LibraryFile> wanted = new LinkedHashMap<>();
+        for (LibraryFile lib : libs)
+            wanted.put(lib.file, lib);
+
+        URI uri = mirrors.candidates(libs.get(0)).get(0).resolve(bundle);
+        Semaphore permits = session.acquire(uri);
+        URLConnection connection = null;
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream((connection = session.open(uri)).getInputStream(), 65536))) {
+            ZipEntry entry;
+            while (!wanted.isEmpty() && (entry = zip.getNextEntry()) != null) {
+                LibraryFile lib = wanted.get(entry.getName());
+                if (lib != null && stageBundled(lib, zip, uri, progress))
+                    wanted.remove(lib.file);
+            }
+        } catch (InterruptedIOException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to use bundle %s, downloading its files individually", uri), ex);
+            HttpSession.release(connection);
+        } finally {
+            permits.release();
+        }
+
+        if (!wanted.isEmpty())
+            log.info(String.format("Bundle %s did not deliver %d of %d files", uri, wanted.size(), libs.size()));
+        return new ArrayList<>(wanted.values());
+    }
+
+    /**
+     * Stage a file from a bundle after verifying it. With a shared cache the file is published right away,
+     * unless another launcher already did so.
+     *
+     * @return true if the file was staged, false if the bundle holds a different version of it
+     */
+    @SuppressWarnings("try")
+    private boolean stageBundled(LibraryFile lib, InputStream input, URI uri, LongConsumer progress) throws IOException {
+        LibraryCache cache = lib.getCache();
+        try (LibraryCache.Lock lock = cache != null ? cache.lock(lib) : null) {
+            if (cache != null && cache.contains(lib)) {
+                progress.accept(lib.size);
+                return true;
+            }
+
+            Path staging = lib.getStagingPath().toAbsolutePath();
+            Files.createDirectories(staging.getParent());
+            Checksum checksum = lib.newChecksum();
+            long total = 0;
+            try (OutputStream output = Files.newOutputStream(staging)) {
+                byte[] buf = new byte[65536];
+                int read;
+                while (total <= lib.size && (read = input.read(buf)) > -1) {
+                    if (Thread.currentThread().isInterrupted())
+                        throw new InterruptedIOException("Download of " + uri + " was interrupted");
+                    checksum.update(buf, 0, read);
+                    output.write(buf, 0, read);
+                    total += read;
+                    progress.accept(read);
+                }
+            } catch (IOException ex) {
+                progress.accept(-total);
+                discardPartial(staging);
+                throw ex;
+            }
+
+            if (total != lib.size || checksum.getValue() != lib.checksum) {
+                progress.accept(-total);
+                discardPartial(staging);
+                log.warning(String.format("Bundle %s holds a different version of %s", uri, lib.file));
+                return false;
+            }
+
+            Files.deleteIfExists(partialMetadataPath(staging));
+            if (cache != null)
+                cache.publish(lib, staging);
+            return true;
+        }
+    }
+
+    /**
+     * With a shared cache, the file is locked while it is downloaded and published to the cache as soon as it
+     * is verified. If another launcher published it in the meantime, that copy is used instead.
+     */
+    @SuppressWarnings("try")
+    private boolean downloadWithRetry(LibraryFile lib, LongConsumer progress) throws InterruptedException {
+        LibraryCache cache = lib.getCache();
+        if (cache == null)
+            return downloadWithFailover(lib, progress);
+
+        try (LibraryCache.Lock lock = cache.lock(lib)) {
+            if (cache.contains(lib)) {
+                log.info(String.format("Using %s from the shared cache", lib.file));
+                progress.accept(lib.size);
+                return true;
+            }
+            if (!downloadWithFailover(lib, progress))
+                return false;
+            cache.publish(lib, lib.getStagingPath());
+            Files.deleteIfExists(partialMetadataPath(lib.getStagingPath()));
+            return true;
+        } catch (InterruptedIOException ex) {
+            throw new InterruptedException(ex.getMessage());
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to store %s in the shared cache %s", lib.file, cache.getRoot()), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Every location is tried at least once before a file is given up on. The pause between attempts only
+     * starts once all locations have been tried, since moving on to another mirror is not a retry of the same request.
+     */
+    private boolean downloadWithFailover(LibraryFile lib, LongConsumer progress) throws InterruptedException {
+        List<URI> candidates = mirrors.candidates(lib);
+        int attempts = Math.max(retries + 1, candidates.size());
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            URI base = candidates.get(attempt % candidates.size());
+            long[] written = new long[1];
+            try {
+                download(lib, base, read -> {
+                    written[0] += read;
+                    progress.accept(read);
+                });
+                mirrors.succeeded(base);
+                return true;
+            } catch (InterruptedIOException ex) {
+                throw new InterruptedException(ex.getMessage());
+            } catch (IOException ex) {
+                progress.accept(-written[0]);
+                mirrors.failed(base);
+                log.log(Level.WARNING, String.format("Download of %s from %s failed (attempt %d of %d)", lib.file, base, attempt + 1, attempts), ex);
+                if (attempt + 1 >= candidates.size() && attempt + 1 < attempts)
+                    Thread.sleep(500L * (attempt + 2 - candidates.size()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move all staged files into place. This is only done when every file in the update was downloaded
+     * and verified, so the previous set of files stays usable until the new set is complete. Files in a
+     * shared cache were already published under their checksum when they were downloaded.
+     *
+     * @param files the files that were downloaded
+     * @param index the verification index to record the new files in
+     */
+    public void commit(List<LibraryFile> files, VerificationIndex index) throws IOException {
+        for (LibraryFile lib : files) {
+            if (lib.getCache() == null) {
+                Path target = lib.toPath().toAbsolutePath();
+                try {
+                    Files.move(lib.getStagingPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(lib.getStagingPath(), target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.deleteIfExists(partialMetadataPath(lib.getStagingPath()));
+            }
+            index.verified(lib.toPath(), lib.getAlgorithm(), lib.checksum);
+        }
+        index.save();
+    }
+
+    /**
+     * Download a single file to its staging path. The checksum and size are verified while the file
+     * is being written, and a file that does not match the manifest is removed before it is ever moved into place.
+     *
+     * If the connection drops, the partial file is kept together with a small metadata file holding the
+     * expected size and checksum. The next attempt continues from where it stopped using an HTTP Range
+     * request, and falls back to a full download if the server does not honor the range.
+     */
+    private void download(LibraryFile lib, URI base, LongConsumer progress) throws IOException {
+        URI uri = base.resolve(lib.file);
+        Path staging = lib.getStagingPath().toAbsolutePath();
+        Files.createDirectories(staging.getParent());
+
+        long offset = resumeOffset(lib, staging);
+        if (offset == lib.size) {
+            if (lib.hash(staging) == lib.checksum) {
+                progress.accept(lib.size);
+                return;
+            }
+            discardPartial(staging);
+            offset = 0;
+        }
+
+        if (offset == 0 && !lib.deltas.isEmpty() && downloadDelta(lib, base, staging, progress))
+            return;
+
+        if ("file".equals(uri.getScheme())) {
+            copyLocal(lib, uri, staging, offset, progress);
+            return;
+        }
+
+        Semaphore permits = session.acquire(uri);
+        boolean discard = false;
+        try {
+            URLConnection connection = offset == 0 ? openCompressed(lib, uri) : null;
+            if (connection == null) {
+                connection = session.open(uri);
+                // A range is a range of the file itself, so a resumed download is never compressed
+                if (offset > 0 && connection instanceof HttpURLConnection)
+                    connection.setRequestProperty("Range", String.format("bytes=%d-", offset));
+                else if (connection instanceof HttpURLConnection)
+                    connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+
+            InputStream stream;
+            try {
+                stream = connection.getInputStream();
+            } catch (IOException ex) {
+                if (offset > 0 && connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() == 416)
+                    discard = true;
+                HttpSession.release(connection);
+                throw ex;
+            }
+            if (isCompressed(connection)) {
+                try {
+                    stream = new GZIPInputStream(stream, 65536);
+                } catch (IOException ex) {
+                    stream.close();
+                    throw ex;
+                }
+            }
+
+            Checksum checksum = lib.newChecksum();
+            try (ReadableByteChannel input = Channels.newChannel(stream)) {
+                if (offset > 0 && !resumed(connection, stream, offset)) {
+                    log.info(String.format("Server did not honor range request for %s, downloading the whole file", uri));
+                    offset = 0;
+                }
+                if (offset > 0) {
+                    updateChecksum(checksum, staging);
+                    progress.accept(offset);
+                } else {
+                    writePartialMetadata(lib, staging);
+                }
+
+                try (FileChannel output = openStaging(staging, offset)) {
+                    ByteBuffer buf = buffers.get();
+                    buf.clear();
+                    long total = offset;
+
+                    while (input.read(buf) > -1) {
+                        if (Thread.currentThread().isInterrupted())
+                            throw new InterruptedIOException("Download of " + lib.file + " was interrupted");
+                        buf.flip();
+                        int read = buf.remaining();
+                        total += read;
+                        if (total > lib.size) {
+                            discard = true;
+                            throw new IOException(String.format("%s is larger than the expected %d bytes", uri, lib.size));
+                        }
+                        HashAlgorithm.update(checksum, buf.duplicate());
+                        while (buf.hasRemaining())
+                            output.write(buf);
+                        progress.accept(read);
+                        buf.clear();
+                    }
+
+                    if (total != lib.size)
+                        throw new IOException(String.format("%s ended after %d of %d bytes", uri, total, lib.size));
+                }
+
+                if (checksum.getValue() != lib.checksum) {
+                    discard = true;
+                    throw new IOException(String.format("Checksum mismatch for %s, expected %d but got %d", uri, lib.checksum, checksum.getValue()));
+                }
+            }
+        } finally {
+            permits.release();
+            if (discard)
+                discardPartial(staging);
+        }
+    }
+
+    /**
+     * Request the compressed copy of a file published by <code>CreateManifest --gzip</code>. If the copy
+     * is missing on the server, that is logged and null is returned, so the caller requests the file itself.
+     */
+    private URLConnection openCompressed(LibraryFile lib, URI uri) throws IOException {
+        if (lib.gzipSize == null)
+            return null;
+
+        URI compressed = URI.create(uri + ".gz");
+        URLConnection connection = session.open(compressed);
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                log.info(String.format("%s answered %d, downloading %s uncompressed", compressed, status, lib.file));
+                HttpSession.release(connection);
+                return null;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * A response is decompressed once, whether it is the published compressed copy or the server compressed
+     * it on request. A server that labels the compressed copy with a content encoding does not make it twice.
+     */
+    private static boolean isCompressed(URLConnection connection) {
+        String encoding = connection.getContentEncoding();
+        return connection.getURL().getPath().endsWith(".gz")
+                || "gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Copy a file from a <code>file:</code> URI, such as an install on a network share. The bytes are moved by
+     * {@link FileChannel#transferTo} without passing through the Java heap, and the staged copy is checksummed afterwards.
+     */
+    private void copyLocal(LibraryFile lib, URI uri, Path staging, long offset, LongConsumer progress) throws IOException {
+        Path source = Paths.get(uri);
+        Semaphore permits = session.acquire(uri);
+        boolean discard = false;
+        try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = input.size();
+            if (size != lib.size)
+                throw new IOException(String.format("%s has %d bytes, expected %d", uri, size, lib.size));
+
+            if (offset > 0)
+                progress.accept(offset);
+            else
+                writePartialMetadata(lib, staging);
+
+            try (FileChannel output = openStaging(staging, offset)) {
+                long position = offset;
+                while (position < size) {
+                    if (Thread.currentThread().isInterrupted())
+                        throw new InterruptedIOException("Copy of " + lib.file + " was interrupted");
+                    long transferred = input.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), output);
+                    if (transferred <= 0)
+                        throw new EOFException(String.format("%s ended after %d of %d bytes", uri, position, size));
+                    position += transferred;
+                    progress.accept(transferred);
+                }
+            }
+
+            long checksum = lib.hash(staging);
+            if (checksum != lib.checksum) {
+                discard = true;
+                throw new IOException(String.format("Checksum mismatch for %s, expected %d but got %d", uri, lib.checksum, checksum));
+            }
+        } finally {
+            permits.release();
+            if (discard)
+                discardPartial(staging);
+        }
+    }
+
+    /**
+     * Try to rebuild the new version of a file from the version already on disk and a published delta.
+     * Any problem with the delta is logged and reported as a miss, so the caller falls back to a full download.
+     *
+     * @return true if the staging file now holds the verified new version
+     */
+    private boolean downloadDelta(LibraryFile lib, URI base, Path staging, LongConsumer progress) throws InterruptedIOException {
+        LibraryCache cache = lib.getCache();
+        URI uri = null;
+        try {
+            Path current = null;
+            DeltaFile delta = null;
+            if (cache != null) {
+                // Earlier versions stay in the shared cache under their own checksum
+                for (DeltaFile candidate : lib.deltas) {
+                    current = cache.find(lib.getAlgorithm(), candidate.from);
+                    if (current != null) {
+                        delta = candidate;
+                        break;
+                    }
+                }
+            } else if (Files.exists(lib.toPath())) {
+                current = lib.toPath();
+                delta = lib.findDelta(manifest.getVerificationIndex().checksum(current, lib.getAlgorithm()));
+            }
+            if (delta == null)
+                return false;
+
+            uri = base.resolve(delta.file);
+            Semaphore permits = session.acquire(uri);
+            CheckedOutputStream output = new CheckedOutputStream(Files.newOutputStream(staging), lib.newChecksum());
+            long size;
+            try (InputStream input = session.open(uri).getInputStream()) {
+                size = BinaryDelta.apply(current, input, output);
+            } finally {
+                output.close();
+                permits.release();
+            }
+
+            if (size == lib.size && output.getChecksum().getValue() == lib.checksum) {
+                progress.accept(lib.size);
+                return true;
+            }
+            log.warning(String.format("Delta %s did not produce the expected version of %s", uri, lib.file));
+        } catch (InterruptedIOException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to apply delta %s to %s", uri, lib.file), ex);
+        }
+
+        try {
+            discardPartial(staging);
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    /**
+     * Find out how much of a file was already downloaded by an earlier attempt. A partial file is only
+     * trusted if its metadata says it belongs to the same size and checksum as the manifest entry.
+     */
+    private static long resumeOffset(LibraryFile lib, Path staging) throws IOException {
+        if (!Files.exists(staging))
+            return 0;
+
+        Path metadata = partialMetadataPath(staging);
+        if (Files.exists(metadata)) {
+            Properties props = new Properties();
+            try (InputStream input = Files.newInputStream(metadata)) {
+                props.load(input);
+            }
+            long size = Files.size(staging);
+            if (String.valueOf(lib.size).equals(props.getProperty("size"))
+                    && String.valueOf(lib.checksum).equals(props.getProperty("checksum"))
+                    && lib.getAlgorithm().name().equals(props.getProperty("algorithm", HashAlgorithm.adler32.name()))
+                    && size <= lib.size)
+                return size;
+        } else if (Files.size(staging) == lib.size) {
+            // Fully staged by a sync that could not be committed
+            return lib.size;
+        }
+
+        discardPartial(staging);
+        return 0;
+    }
+
+    /**
+     * Check if the server answered a range request with the requested part of the file. A plain file URL
+     * does not understand ranges, so in that case the bytes already on disk are skipped instead.
+     */
+    private static boolean resumed(URLConnection connection, InputStream stream, long offset) throws IOException {
+        if (connection instanceof HttpURLConnection) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            return ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL
+                    && contentRange != null && contentRange.startsWith(String.format("bytes %d-", offset));
+        }
+
+        long remaining = offset;
+        while (remaining > 0) {
+            long skipped = stream.skip(remaining);
+            if (skipped <= 0)
+                throw new EOFException(String.format("%s ended before the resume offset %d", connection.getURL(), offset));
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    private static FileChannel openStaging(Path staging, long offset) throws IOException {
+        return offset > 0
+                ? FileChannel.open(staging, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(staging, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void updateChecksum(Checksum checksum, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = buffers.get();
+            buf.clear();
+            while (channel.read(buf) > -1) {
+                buf.flip();
+                HashAlgorithm.update(checksum, buf);
+                buf.clear();
+            }
+        }
+    }
+
+    private static void writePartialMetadata(LibraryFile lib, Path staging) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("file", lib.file);
+        props.setProperty("size", String.valueOf(lib.size));
+        props.setProperty("checksum", String.valueOf(lib.checksum));
+        props.setProperty("algorithm", lib.getAlgorithm().name());
+        try (OutputStream output = Files.newOutputStream(partialMetadataPath(staging))) {
+            props.store(output, "fxlauncher partial download");
+        }
+    }
+
+    private static void discardPartial(Path staging) throws IOException {
+        Files.deleteIfExists(staging);
+        Files.deleteIfExists(partialMetadataPath(staging));
+    }
+
+    private static Path partialMetadataPath(Path staging) {
+        return staging.resolveSibling(staging.getFileName() + ".meta");
+    }
+
+    private static class DownloadThreadFactory implements ThreadFactory {
+        private static final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "fxlauncher-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package fxlauncher;
+
+/**
+ * A snapshot of the progress of a synchronization, as published by {@link ProgressAggregator}.
+ */
+public class DownloadProgress {
+    private final long written;
+    private final long total;
+    private final double bytesPerSecond;
+
+    public DownloadProgress(long written, long total, double bytesPerSecond) {
+        this.written = written;
+        this.total = total;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * The number of bytes written so far.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * The number of bytes to write in total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * The fraction of the bytes written, between 0 and 1.
+     */
+    public double getProgress() {
+        return total > 0 ? Math.min(1, Math.max(0, (double) written / total)) : 1;
+    }
+
+    /**
+     * The smoothed transfer rate, or 0 while it is not known yet.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * The estimated number of seconds until all bytes are written, or -1 while the transfer rate is not known.
+     */
+    public long getSecondsRemaining() {
+        if (bytesPerSecond <= 0)
+            return -1;
+        return (long) Math.ceil(Math.max(0, total - written) / bytesPerSecond);
+    }
+
+    public String toString() {
+        return String.format("%d/%d bytes, %.0f bytes/s", written, total, bytesPerSecond);
+    }
+}
@@ -4,6 +4,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -17,8 +18,15 @@ public class FXManifest {
     URI uri;
     @XmlAttribute(name = "launch")
     String launchClass;
+    @XmlAttribute
+    HashAlgorithm algorithm;
     @XmlElement(name = "lib")
     List<LibraryFile> files = new ArrayList<>();
+    /**
+     * Additional locations serving the same files as uri, such as file servers in branch offices.
+     */
+    @XmlElement(name = "mirror")
+    List<URI> mirrors = new ArrayList<>();
 	@XmlElement
 	String updateText = "Updating...";
 	@XmlElement
@@ -37,6 +45,39 @@ public class FXManifest {
     String buildVersion;
     @XmlElement
     String releaseNotes;
+    @XmlElement
+    int downloadThreads = 6;
+    @XmlElement
+    int connectionsPerHost = 4;
+    @XmlElement
+    int downloadRetries = 2;
+    @XmlElement
+    UpdateMode updateMode = UpdateMode.prompt;
+    @XmlElement
+    boolean classDataSharing;
+    @XmlElement
+    int connectTimeout = 10000;
+    @XmlElement
+    int readTimeout = 30000;
+    /**
+     * A directory shared by all launchers on the machine to store library files in, see {@link LibraryCache}.
+     */
+    @XmlElement
+    String sharedCache;
+    /**
+     * The size in megabytes the shared cache is trimmed to, or 0 to keep every file.
+     */
+    @XmlElement
+    long sharedCacheSize;
+
+    /**
+     * True if this manifest was read from the local cache rather than embedded in the launcher or fetched remotely.
+     */
+    boolean cached;
+
+    private VerificationIndex verificationIndex;
+    private LibraryCache libraryCache;
+    private boolean libraryCacheResolved;
 
     public String getFilename() {
         return String.format("%s.xml", launchClass);
@@ -50,6 +91,60 @@ public class FXManifest {
 		return Paths.get(getFilename());
 	}
 
+	public Path getBinaryPath() {
+		return Paths.get(String.format("%s.bin", launchClass));
+	}
+
+	public Path getTimingsPath() {
+		return Paths.get(String.format("%s.timings.jsonl", launchClass));
+	}
+
+	public Path getPendingPath() {
+		return Paths.get(String.format("%s.pending.xml", launchClass));
+	}
+
+	public Path getClassDataArchivePath() {
+		return Paths.get(String.format("%s.jsa", launchClass));
+	}
+
+	public Path getPackageIndexPath() {
+		return Paths.get(String.format("%s.packages", launchClass));
+	}
+
+	public Path getStartupClassesPath() {
+		return Paths.get(String.format("%s.classes", launchClass));
+	}
+
+	public Path getIndexPath() {
+		return Paths.get(String.format("%s.index", launchClass));
+	}
+
+	/**
+	 * The shared cache the library files are stored in, or null if they are stored in the working directory.
+	 */
+	public synchronized LibraryCache getLibraryCache() {
+		if (!libraryCacheResolved) {
+			libraryCache = LibraryCache.forManifest(this);
+			libraryCacheResolved = true;
+		}
+		return libraryCache;
+	}
+
+	public synchronized VerificationIndex getVerificationIndex() {
+		if (verificationIndex == null)
+			verificationIndex = VerificationIndex.load(getIndexPath());
+		return verificationIndex;
+	}
+
+	/**
+	 * Use the verification index of another manifest for the same application, so both
+	 * record their results in the same index instead of overwriting each other.
+	 */
+	public synchronized void shareVerificationIndex(FXManifest other) {
+		if (getIndexPath().equals(other.getIndexPath()))
+			verificationIndex = other.getVerificationIndex();
+	}
+
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
@@ -62,21 +157,39 @@ public class FXManifest {
 
         if (uri != null ? !uri.equals(that.uri) : that.uri != null) return false;
         if (launchClass != null ? !launchClass.equals(that.launchClass) : that.launchClass != null) return false;
+        if (algorithm != that.algorithm) return false;
         if (files != null ? !files.equals(that.files) : that.files != null) return false;
+        if (mirrors != null ? !mirrors.equals(that.mirrors) : that.mirrors != null) return false;
         if (updateText != null ? !updateText.equals(that.updateText) : that.updateText != null) return false;
         if (updateLabelStyle != null ? !updateLabelStyle.equals(that.updateLabelStyle) : that.updateLabelStyle != null)
             return false;
         if (progressBarStyle != null ? !progressBarStyle.equals(that.progressBarStyle) : that.progressBarStyle != null)
             return false;
+        if (downloadThreads != that.downloadThreads) return false;
+        if (connectionsPerHost != that.connectionsPerHost) return false;
+        if (downloadRetries != that.downloadRetries) return false;
+        if (updateMode != that.updateMode) return false;
+        if (classDataSharing != that.classDataSharing) return false;
+        if (connectTimeout != that.connectTimeout) return false;
+        if (readTimeout != that.readTimeout) return false;
+        if (sharedCache != null ? !sharedCache.equals(that.sharedCache) : that.sharedCache != null) return false;
+        if (sharedCacheSize != that.sharedCacheSize) return false;
         return wrapperStyle != null ? wrapperStyle.equals(that.wrapperStyle) : that.wrapperStyle == null;
 
     }
 
+    /**
+     * The files for this platform that are missing or out of date. Lazy files are only kept up to date
+     * once they were downloaded, until then the class loader downloads them when they are needed.
+     */
     public List<LibraryFile> filesNeedingUpdate(){
+        VerificationIndex index = getVerificationIndex();
         List<LibraryFile> needsUpdate = files.stream()
                 .filter(LibraryFile::loadForCurrentPlatform)
-                .filter(LibraryFile::needsUpdate)
+                .filter(lib -> !lib.isLazy() || Files.exists(lib.toPath()))
+                .filter(lib -> lib.needsUpdate(index))
                 .collect(Collectors.toList());
+        index.save();
         return needsUpdate;
     }
 
@@ -87,7 +200,9 @@ public class FXManifest {
     public int hashCode() {
         int result = uri != null ? uri.hashCode() : 0;
         result = 31 * result + (launchClass != null ? launchClass.hashCode() : 0);
+        result = 31 * result + (algorithm != null ? algorithm.hashCode() : 0);
         result = 31 * result + (files != null ? files.hashCode() : 0);
+        result = 31 * result + (mirrors != null ? mirrors.hashCode() : 0);
         result = 31 * result + (updateText != null ? updateText.hashCode() : 0);
         result = 31 * result + (updateLabelStyle != null ? updateLabelStyle.hashCode() : 0);
         result = 31 * result + (progressBarStyle != null ? progressBarStyle.hashCode() : 0);
@@ -95,6 +210,15 @@ public class FXManifest {
         result = 31 * result + (majorVersion != null ? majorVersion.hashCode() : 0);
         result = 31 * result + (minorVersion != null ? minorVersion.hashCode() : 0);
         result = 31 * result + (buildVersion != null ? buildVersion.hashCode() : 0);
+        result = 31 * result + downloadThreads;
+        result = 31 * result + connectionsPerHost;
+        result = 31 * result + downloadRetries;
+        result = 31 * result + (updateMode != null ? updateMode.hashCode() : 0);
+        result = 31 * result + (classDataSharing ? 1 : 0);
+        result = 31 * result + connectTimeout;
+        result = 31 * result + readTimeout;
+        result = 31 * result + (sharedCache != null ? sharedCache.hashCode() : 0);
+        result = 31 * result + (int) (sharedCacheSize ^ (sharedCacheSize >>> 32));
         return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package fxlauncher;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.LongProperty;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows progress snapshots in JavaFX properties. At most one update is queued on the FX thread at
+ * a time; snapshots that arrive while it is waiting replace the one it will show.
+ */
+public class FXProgressSink implements ProgressSink {
+    private final LongProperty total;
+    private final LongProperty written;
+    private final DoubleProperty progress;
+    private final DoubleProperty bytesPerSecond;
+    private final AtomicReference<DownloadProgress> pending = new AtomicReference<>();
+
+    /**
+     * @param bytesPerSecond receives the transfer rate, or null if it is not shown
+     */
+    public FXProgressSink(LongProperty total, LongProperty written, DoubleProperty progress, DoubleProperty bytesPerSecond) {
+        this.total = total;
+        this.written = written;
+        this.progress = progress;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void publish(DownloadProgress snapshot) {
+        if (pending.getAndSet(snapshot) == null)
+            Platform.runLater(this::update);
+    }
+
+    private void update() {
+        DownloadProgress snapshot = pending.getAndSet(null);
+        if (snapshot == null)
+            return;
+
+        if (bytesPerSecond != null)
+            bytesPerSecond.set(snapshot.getBytesPerSecond());
+        total.set(snapshot.getTotal());
+        written.set(snapshot.getWritten());
+        progress.set(snapshot.getProgress());
+    }
+}
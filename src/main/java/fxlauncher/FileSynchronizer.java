@@ -0,0 +1,78 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Brings the library files on disk in line with a manifest: the files that are missing or changed are
+ * downloaded and verified, and only moved into place when all of them succeeded. The manifest becomes the cached
+ * manifest once its files are in place. This is the synchronization behind {@link SyncFilesService}, without any
+ * dependency on the JavaFX toolkit, so {@link HeadlessSync} can use it too.
+ */
+public class FileSynchronizer {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    private final FXManifest manifest;
+    private final ProgressSink sink;
+    private final HttpSession session;
+    private List<LibraryFile> updated = Collections.emptyList();
+    private List<LibraryFile> failed = Collections.emptyList();
+
+    public FileSynchronizer(FXManifest manifest, ProgressSink sink) {
+        this(manifest, sink, new HttpSession(manifest));
+    }
+
+    /**
+     * @param session the session the manifest was fetched with, so the downloads reuse its connections
+     */
+    public FileSynchronizer(FXManifest manifest, ProgressSink sink, HttpSession session) {
+        this.manifest = manifest;
+        this.sink = sink;
+        this.session = session;
+    }
+
+    /**
+     * @return true if every file is now up to date, false if some files could not be downloaded,
+     * in which case the files on disk are left as they were
+     */
+    public boolean sync() throws IOException, InterruptedException {
+        List<LibraryFile> needsUpdate = manifest.filesNeedingUpdate();
+
+        long totalBytes = needsUpdate.stream().mapToLong(f -> f.size).sum();
+
+        DownloadEngine engine = new DownloadEngine(manifest, session);
+        try (ProgressAggregator progress = new ProgressAggregator(totalBytes, sink).start()) {
+            failed = engine.download(needsUpdate, progress);
+        }
+
+        if (!failed.isEmpty()) {
+            log.warning(String.format("%d of %d files could not be synchronized, keeping the current version: %s", failed.size(), needsUpdate.size(),
+                    failed.stream().map(f -> f.file).collect(Collectors.joining(", "))));
+            return false;
+        }
+
+        ClassDataSharing.invalidate(manifest);
+        engine.commit(needsUpdate, manifest.getVerificationIndex());
+        PackageIndex.forManifest(manifest);
+        ManifestLoader.save(manifest);
+        updated = needsUpdate;
+        return true;
+    }
+
+    /**
+     * The files that were downloaded by the last successful {@link #sync()}.
+     */
+    public List<LibraryFile> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * The files that could not be downloaded by the last {@link #sync()}.
+     */
+    public List<LibraryFile> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,146 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+/**
+ * The checksum algorithms a manifest can use to identify library files, selected with the
+ * <code>algorithm</code> attribute of the manifest or of a single <code>lib</code> element.
+ * Manifests without the attribute use {@link #adler32}, which is what older launchers expect.
+ *
+ * Files are read through a direct buffer, or memory mapped when they are large, so the data
+ * is never copied to the heap when the checksum can consume a buffer directly.
+ */
+public enum HashAlgorithm implements Hasher {
+    /**
+     * The original 32 bit checksum. Fast but weak, kept for existing manifests.
+     */
+    adler32(Adler32::new),
+    /**
+     * CRC-32C, computed with the processor's CRC32 instruction on Java 9 and newer.
+     */
+    crc32c(jdkChecksum("java.util.zip.CRC32C", Crc32c::new)),
+    /**
+     * 64 bit xxHash, strong enough to identify file contents.
+     */
+    xxhash64(XxHash64::new);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final long MAP_CHUNK = 64 * 1024 * 1024;
+
+    /**
+     * A mapping keeps the file locked on Windows until the buffer is garbage collected,
+     * which would break replacing the file after an update.
+     */
+    private static final boolean MAP_FILES = OS.current != OS.win;
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * <code>Checksum.update(ByteBuffer)</code>, which exists from Java 9 on.
+     */
+    private static final MethodHandle updateBuffer = findUpdateBuffer();
+
+    private final Supplier<Checksum> factory;
+
+    HashAlgorithm(Supplier<Checksum> factory) {
+        this.factory = factory;
+    }
+
+    public Checksum newChecksum() {
+        return factory.get();
+    }
+
+    public long hash(Path path) throws IOException {
+        Checksum checksum = newChecksum();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (MAP_FILES && size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position));
+                    update(checksum, mapped);
+                }
+            } else {
+                ByteBuffer buf = buffers.get();
+                buf.clear();
+                while (channel.read(buf) > -1) {
+                    buf.flip();
+                    update(checksum, buf);
+                    buf.clear();
+                }
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of the buffer.
+     */
+    public static void update(Checksum checksum, ByteBuffer buf) {
+        if (checksum instanceof Adler32) {
+            ((Adler32) checksum).update(buf);
+        } else if (checksum instanceof XxHash64) {
+            ((XxHash64) checksum).update(buf);
+        } else if (checksum instanceof Crc32c) {
+            ((Crc32c) checksum).update(buf);
+        } else if (updateBuffer != null) {
+            try {
+                updateBuffer.invoke(checksum, buf);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new RuntimeException(ex);
+            }
+        } else {
+            byte[] bytes = new byte[Math.min(buf.remaining(), 16384)];
+            while (buf.hasRemaining()) {
+                int len = Math.min(bytes.length, buf.remaining());
+                buf.get(bytes, 0, len);
+                checksum.update(bytes, 0, len);
+            }
+        }
+    }
+
+    /**
+     * The algorithm with the given name, or {@link #adler32} if the name is null.
+     */
+    public static HashAlgorithm of(String name) {
+        return name == null ? adler32 : valueOf(name.toLowerCase());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Checksum> jdkChecksum(String className, Supplier<Checksum> fallback) {
+        try {
+            Class<? extends Checksum> type = (Class<? extends Checksum>) Class.forName(className);
+            type.getDeclaredConstructor().newInstance();
+            return () -> {
+                try {
+                    return type.getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return fallback;
+        }
+    }
+
+    private static MethodHandle findUpdateBuffer() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Checksum.class, "update", MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.Checksum;
+
+/**
+ * Calculates the checksums used to identify library files.
+ */
+public interface Hasher {
+    /**
+     * Create a checksum instance, for calculating the checksum of a stream as it is read or written.
+     */
+    Checksum newChecksum();
+
+    /**
+     * Calculate the checksum of a file.
+     */
+    long hash(Path path) throws IOException;
+}
@@ -0,0 +1,128 @@
+package fxlauncher;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Updates the installed application without starting the JavaFX toolkit, so updates can be staged ahead of time
+ * by a scheduled task. It checks for a new manifest and synchronizes the files exactly like a normal launch, but
+ * reports on standard output and ends with an exit code instead of starting the application. Run it from the
+ * directory the launcher normally runs in:
+ *
+ * <pre>java -cp fxlauncher.jar fxlauncher.HeadlessSync [--check] [--quiet]</pre>
+ *
+ * <code>java -jar fxlauncher.jar --headless</code> does the same, but on Java 8 the JavaFX launcher may start the
+ * toolkit before the launcher gets control, which fails on a machine without a display.
+ *
+ * <ul>
+ *     <li><code>--check</code> only reports whether an update is needed, without downloading anything</li>
+ *     <li><code>--quiet</code> leaves out the progress lines</li>
+ * </ul>
+ */
+public class HeadlessSync {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    /**
+     * The files are up to date, either already or after downloading an update.
+     */
+    public static final int EXIT_UP_TO_DATE = 0;
+    /**
+     * Some files could not be downloaded. The files on disk were left as they were.
+     */
+    public static final int EXIT_SYNC_FAILED = 1;
+    /**
+     * The manifest could not be read or the arguments were not understood.
+     */
+    public static final int EXIT_ERROR = 2;
+    /**
+     * With <code>--check</code>: an update is available.
+     */
+    public static final int EXIT_UPDATE_AVAILABLE = 3;
+    /**
+     * The remote manifest could not be fetched, but the files of the installed version are complete.
+     */
+    public static final int EXIT_REMOTE_UNAVAILABLE = 4;
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Check for an update and synchronize the files.
+     *
+     * @return one of the <code>EXIT_</code> codes
+     */
+    public static int run(String[] args, PrintStream out) {
+        boolean check = false;
+        boolean quiet = false;
+        for (String arg : args) {
+            if (arg.equals("--check"))
+                check = true;
+            else if (arg.equals("--quiet"))
+                quiet = true;
+            else if (!arg.equals("--headless")) {
+                out.println(String.format("Unknown argument %s, expected --check or --quiet", arg));
+                return EXIT_ERROR;
+            }
+        }
+
+        ManifestLoader loader = new ManifestLoader();
+        FXManifest manifest;
+        try {
+            manifest = loader.load();
+        } catch (Exception ex) {
+            log.log(Level.SEVERE, "Unable to load the manifest", ex);
+            out.println(String.format("Unable to load the manifest: %s", ex));
+            return EXIT_ERROR;
+        }
+
+        boolean remoteChecked = loader.getRemoteError() == null;
+        if (!remoteChecked)
+            out.println(String.format("Unable to check %s for updates: %s", manifest.getFXAppURI(), loader.getRemoteError()));
+
+        List<LibraryFile> needsUpdate = manifest.filesNeedingUpdate();
+        long totalBytes = needsUpdate.stream().mapToLong(f -> f.size).sum();
+        String version = String.format("%s.%s.%s", manifest.majorVersion, manifest.minorVersion, manifest.buildVersion);
+        if (needsUpdate.isEmpty()) {
+            out.println(String.format("Version %s is up to date", version));
+            return remoteChecked ? EXIT_UP_TO_DATE : EXIT_REMOTE_UNAVAILABLE;
+        }
+
+        out.println(String.format(Locale.ROOT, "Version %s needs %d of %d files, %.1f MB", version, needsUpdate.size(), manifest.files.size(), totalBytes / 1024d / 1024d));
+        if (check)
+            return EXIT_UPDATE_AVAILABLE;
+
+        ProgressSink sink = quiet ? progress -> {} : new ConsoleProgressSink(out, 1, TimeUnit.SECONDS);
+        FileSynchronizer synchronizer = new FileSynchronizer(manifest, sink, loader.getSession());
+        try {
+            if (!synchronizer.sync()) {
+                out.println(String.format("%d files could not be downloaded: %s", synchronizer.getFailed().size(),
+                        synchronizer.getFailed().stream().map(f -> f.file).collect(Collectors.joining(", "))));
+                return EXIT_SYNC_FAILED;
+            }
+        } catch (InterruptedException ex) {
+            out.println("Interrupted");
+            return EXIT_SYNC_FAILED;
+        } catch (Exception ex) {
+            log.log(Level.SEVERE, "Unable to synchronize files", ex);
+            out.println(String.format("Unable to synchronize files: %s", ex));
+            return EXIT_SYNC_FAILED;
+        }
+
+        out.println(String.format("Updated %d files, version %s is up to date", synchronizer.getUpdated().size(), version));
+        return EXIT_UP_TO_DATE;
+    }
+
+    /**
+     * @return true if the arguments ask for a headless synchronization instead of a launch
+     */
+    static boolean isRequested(String[] args) {
+        return Arrays.asList(args).contains("--headless");
+    }
+}
@@ -0,0 +1,118 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Opens the connections of an update session. Every connection gets the timeouts of the manifest, and the number
+ * of simultaneous connections to a single host is limited by the connectionsPerHost setting.
+ *
+ * Connections are handed back with {@link #release(URLConnection)} instead of being disconnected, so the JDK keeps
+ * the socket open and the next request to the same host reuses it without a new TCP and TLS handshake. Together with
+ * the permits, this gives each host a pool of at most connectionsPerHost keep-alive connections that serve the
+ * manifest, the mirror probe and all the downloads of the session.
+ *
+ * One session is created for each update, from the manifest it starts with, and passed from the manifest check to
+ * the downloads. A new version that changes the timeouts or connectionsPerHost uses them from the next update on.
+ *
+ * The connections are plain <code>HttpURLConnection</code>s, the only HTTP client in Java 8, so a connection serves
+ * one request after the other. Requests are not pipelined and HTTP/2 is not used.
+ */
+public class HttpSession {
+    /**
+     * The JDK system property for the number of idle connections it keeps open per host.
+     */
+    static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+
+    /**
+     * The remainder of a response is read so the connection can be reused, unless it is larger than this.
+     */
+    private static final int MAX_DRAIN = 64 * 1024;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int connectionsPerHost;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public HttpSession(FXManifest manifest) {
+        this.connectTimeout = manifest.connectTimeout;
+        this.readTimeout = manifest.readTimeout;
+        this.connectionsPerHost = Math.max(1, manifest.connectionsPerHost);
+
+        // The JDK only keeps 5 idle connections per host by default. This only has an effect before the first
+        // connection of the process is kept alive, so a later manifest with more connections per host may not benefit.
+        if (System.getProperty(MAX_CONNECTIONS_PROPERTY) == null && connectionsPerHost > 5)
+            System.setProperty(MAX_CONNECTIONS_PROPERTY, String.valueOf(connectionsPerHost));
+    }
+
+    /**
+     * Open a connection with the timeouts of the manifest.
+     */
+    public URLConnection open(URI uri) throws IOException {
+        return open(uri, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Open a connection with timeouts that are at most the given number of milliseconds.
+     */
+    public URLConnection open(URI uri, int maxTimeout) throws IOException {
+        return open(uri, Math.min(connectTimeout, maxTimeout), Math.min(readTimeout, maxTimeout));
+    }
+
+    private URLConnection open(URI uri, int connectTimeout, int readTimeout) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        return connection;
+    }
+
+    /**
+     * Wait for a connection to the host of the given uri to become available. The returned permit
+     * must be released when the connection is done.
+     */
+    public Semaphore acquire(URI uri) throws InterruptedIOException {
+        Semaphore permits = hostPermits.computeIfAbsent(hostKey(uri), host -> new Semaphore(connectionsPerHost, true));
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + uri.getHost());
+        }
+        return permits;
+    }
+
+    /**
+     * Hand a connection back for reuse. The unread part of the response, or of the error response, is drained
+     * so the JDK can keep the socket open. A response that is too large to drain is closed instead.
+     */
+    public static void release(URLConnection connection) {
+        if (!(connection instanceof HttpURLConnection))
+            return;
+
+        HttpURLConnection http = (HttpURLConnection) connection;
+        try {
+            InputStream stream = http.getResponseCode() >= 400 ? http.getErrorStream() : http.getInputStream();
+            if (stream == null)
+                return;
+            try (InputStream input = stream) {
+                byte[] buf = new byte[8192];
+                int drained = 0;
+                int read;
+                while (drained < MAX_DRAIN && (read = input.read(buf)) > -1)
+                    drained += read;
+            }
+        } catch (IOException ignored) {
+            // The connection is closed instead of reused
+        }
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getAuthority() == null ? uri.getScheme() : uri.getScheme() + "://" + uri.getAuthority();
+    }
+}
@@ -0,0 +1,315 @@
+package fxlauncher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+/**
+ * Class loader for the application libraries that uses a {@link PackageIndex} to find the jar
+ * owning a class or resource, instead of searching every jar on the class path in turn. A lookup
+ * for a package that is not in any library fails right away.
+ *
+ * The jars are opened on first use and kept open until the class loader is closed. On Java 9 and newer they are
+ * opened for the running Java version, so multi-release jars provide their versioned classes and resources like
+ * they do on a plain {@link URLClassLoader}.
+ *
+ * A lazy jar that was not downloaded yet is downloaded and verified when it is first opened, which is the first time
+ * a class or resource in one of its packages is requested. The download runs on the thread that made the request
+ * and blocks it until the jar is in place, even if that is the JavaFX application thread, so an application should
+ * touch lazy packages from a background thread. A lazy jar that cannot be downloaded makes that lookup fail.
+ *
+ * Only the jars listed in the manifest are searched. Unlike a plain {@link URLClassLoader}, the
+ * <code>Class-Path</code> attribute in the manifests of the jars is not followed, so every library the
+ * application needs has to be in the manifest, which is the case for everything in the app directory.
+ */
+public class IndexedClassLoader extends URLClassLoader {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    /**
+     * The JarFile constructor that takes a release version, and the version of the running JVM. Both exist from
+     * Java 9 on, and are null on Java 8, which does not know multi-release jars.
+     */
+    private static final Constructor<JarFile> VERSIONED_JAR;
+    private static final Object RUNTIME_VERSION;
+
+    static {
+        registerAsParallelCapable();
+
+        Constructor<JarFile> versionedJar = null;
+        Object runtimeVersion = null;
+        try {
+            versionedJar = JarFile.class.getConstructor(File.class, boolean.class, int.class, Class.forName("java.lang.Runtime$Version"));
+            runtimeVersion = JarFile.class.getMethod("runtimeVersion").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            versionedJar = null;
+        }
+        VERSIONED_JAR = versionedJar;
+        RUNTIME_VERSION = runtimeVersion;
+    }
+
+    private final URL[] jarURLs;
+    private final List<LibraryFile> libs;
+    private final PackageIndex index;
+    private final AtomicReferenceArray<JarFile> jars;
+    private final AtomicIntegerArray multiRelease;
+    private volatile Queue<String> recorded;
+    private volatile boolean closed;
+
+    public IndexedClassLoader(List<LibraryFile> libs, PackageIndex index, ClassLoader parent) {
+        this(libs.stream().map(LibraryFile::toURL).toArray(URL[]::new), libs, index, parent);
+    }
+
+    private IndexedClassLoader(URL[] urls, List<LibraryFile> libs, PackageIndex index, ClassLoader parent) {
+        super(urls, parent);
+        this.jarURLs = urls;
+        this.libs = libs;
+        this.index = index;
+        this.jars = new AtomicReferenceArray<>(libs.size());
+        this.multiRelease = new AtomicIntegerArray(libs.size());
+    }
+
+    /**
+     * Create a class loader for the platform files in the manifest, using the saved package index
+     * if it is up to date.
+     */
+    public static URLClassLoader create(FXManifest manifest) {
+        List<LibraryFile> libs = manifest.files.stream()
+                .filter(LibraryFile::loadForCurrentPlatform)
+                .collect(Collectors.toList());
+
+        try {
+            return new IndexedClassLoader(libs, PackageIndex.forManifest(manifest), IndexedClassLoader.class.getClassLoader());
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Unable to index application libraries, falling back to a plain class loader", ex);
+            return new URLClassLoader(libs.stream().map(LibraryFile::toURL).toArray(URL[]::new));
+        }
+    }
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String entryName = name.replace('.', '/').concat(".class");
+
+        for (int owner : index.jarsFor(PackageIndex.packageOf(entryName))) {
+            try {
+                JarFile jar = jar(owner);
+                JarEntry entry = jar.getJarEntry(entryName);
+                if (entry != null)
+                    return defineClass(name, jar, entry, owner);
+            } catch (IOException ex) {
+                throw new ClassNotFoundException(name, ex);
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
+    private Class<?> defineClass(String name, JarFile jar, JarEntry entry, int owner) throws IOException {
+        byte[] bytes = read(jar, entry);
+
+        int dot = name.lastIndexOf('.');
+        if (dot != -1) {
+            String packageName = name.substring(0, dot);
+            if (loadedPackage(packageName) == null) {
+                Manifest manifest = jar.getManifest();
+                try {
+                    if (manifest != null)
+                        definePackage(packageName, manifest, jarURLs[owner]);
+                    else
+                        definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (IllegalArgumentException alreadyDefinedByAnotherThread) {
+                    // The package was defined concurrently, which is fine
+                }
+            }
+        }
+
+        // Code signers are only known after the entry has been read completely
+        CodeSource codeSource = new CodeSource(jarURLs[owner], entry.getCodeSigners());
+        Class<?> type = defineClass(name, bytes, 0, bytes.length, codeSource);
+        Queue<String> recorded = this.recorded;
+        if (recorded != null)
+            recorded.add(name);
+        return type;
+    }
+
+    /**
+     * getDefinedPackage replaces getPackage from Java 9 on, but does not exist on Java 8.
+     */
+    @SuppressWarnings("deprecation")
+    private Package loadedPackage(String name) {
+        return getPackage(name);
+    }
+
+    /**
+     * Start recording the names of the classes this class loader defines, in the order they are defined.
+     */
+    public void startRecording() {
+        recorded = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return the classes defined since {@link #startRecording()}, or null if nothing was recorded
+     */
+    public List<String> stopRecording() {
+        Queue<String> recorded = this.recorded;
+        this.recorded = null;
+        return recorded == null ? null : new ArrayList<>(recorded);
+    }
+
+    public URL findResource(String name) {
+        for (int owner : index.jarsFor(PackageIndex.packageOf(name))) {
+            try {
+                if (jar(owner).getEntry(name) != null)
+                    return resourceURL(owner, name);
+            } catch (IOException ex) {
+                log.log(Level.FINE, String.format("Unable to look up %s in %s", name, libs.get(owner).file), ex);
+            }
+        }
+        return null;
+    }
+
+    public Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (int owner : index.jarsFor(PackageIndex.packageOf(name)))
+            if (jar(owner).getEntry(name) != null)
+                urls.add(resourceURL(owner, name));
+        return Collections.enumeration(urls);
+    }
+
+    public void close() throws IOException {
+        closed = true;
+        for (int i = 0; i < jars.length(); i++) {
+            JarFile jar = jars.getAndSet(i, null);
+            if (jar != null)
+                jar.close();
+        }
+        super.close();
+    }
+
+    /**
+     * A jar is not opened again once the class loader is closed, so a lookup that is still running on another
+     * thread cannot keep a file open that is about to be replaced.
+     */
+    private JarFile jar(int owner) throws IOException {
+        JarFile jar = jars.get(owner);
+        if (jar == null) {
+            if (closed)
+                throw new IOException("Class loader is closed");
+            if (libs.get(owner).isLazy())
+                fetch(libs.get(owner));
+            JarFile opened = open(libs.get(owner).toPath().toFile());
+            if (VERSIONED_JAR != null && isMultiRelease(opened))
+                multiRelease.set(owner, 1);
+            if (jars.compareAndSet(owner, null, opened)) {
+                jar = opened;
+                if (closed && jars.compareAndSet(owner, opened, null)) {
+                    opened.close();
+                    throw new IOException("Class loader is closed");
+                }
+            } else {
+                opened.close();
+                jar = jars.get(owner);
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Download a lazy file unless it is already there. Concurrent lookups in the same file wait for one download.
+     */
+    private static void fetch(LibraryFile lib) throws IOException {
+        synchronized (lib) {
+            if (Files.exists(lib.toPath()))
+                return;
+            if (lib.manifest == null)
+                throw new IOException(String.format("No manifest to download %s from", lib.file));
+
+            long start = System.nanoTime();
+            List<LibraryFile> files = Collections.singletonList(lib);
+            DownloadEngine engine = new DownloadEngine(lib.manifest);
+            try {
+                if (!engine.download(files, bytes -> {}).isEmpty())
+                    throw new IOException(String.format("Unable to download lazy library %s", lib.file));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("Interrupted while downloading lazy library %s", lib.file));
+            }
+            engine.commit(files, lib.manifest.getVerificationIndex());
+            log.info(String.format("Downloaded lazy library %s in %d ms", lib.file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+    }
+
+    /**
+     * Open a jar for the running Java version, so the versioned entries of a multi-release jar are used.
+     */
+    private static JarFile open(File file) throws IOException {
+        if (VERSIONED_JAR == null)
+            return new JarFile(file);
+
+        try {
+            return VERSIONED_JAR.newInstance(file, true, ZipFile.OPEN_READ, RUNTIME_VERSION);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException(String.format("Unable to open %s", file), ex.getCause());
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException(String.format("Unable to open %s", file), ex);
+        }
+    }
+
+    private static boolean isMultiRelease(JarFile jar) throws IOException {
+        Manifest manifest = jar.getManifest();
+        return manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+    }
+
+    /**
+     * The <code>#runtime</code> fragment makes the JDK open a multi-release jar for the running Java version
+     * when the resource is read, like it does for the resources of a plain {@link URLClassLoader}.
+     */
+    private URL resourceURL(int owner, String name) {
+        try {
+            if (multiRelease.get(owner) != 0)
+                return new URL("jar:" + jarURLs[owner] + "!/" + name + "#runtime");
+            return new URL("jar:" + jarURLs[owner] + "!/" + name);
+        } catch (MalformedURLException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] read(JarFile jar, JarEntry entry) throws IOException {
+        try (InputStream input = jar.getInputStream(entry)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = input.read(buf)) > -1)
+                out.write(buf, 0, read);
+            return out.toByteArray();
+        }
+    }
+}
@@ -13,20 +13,15 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
-import javax.xml.bind.JAXB;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
-import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.Files;
-import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("unchecked")
 public class Launcher extends Application {
@@ -45,7 +40,7 @@ public class Launcher extends Application {
     boolean userWantsToUpdate = false;
 
     public void start(Stage primaryStage) throws Exception {
-
+        StartupTimings.get().begin("Launcher Window");
 
         this.primaryStage = primaryStage;
 
@@ -152,11 +147,27 @@ public class Launcher extends Application {
 //    }
 
     public static void main(String[] args) {
+        if (HeadlessSync.isRequested(args))
+            System.exit(HeadlessSync.run(args, System.out));
+
+        StartupTimings.get().begin("Launcher Startup");
+        int exitCode = ClassDataSharing.relaunch(args);
+        if (exitCode >= 0)
+            System.exit(exitCode);
+
         launch(args);
     }
 
+    /**
+     * Remember the current phase for error messages and start timing it.
+     */
+    private void setPhase(String phase) {
+        this.phase = phase;
+        StartupTimings.get().begin(phase);
+    }
+
     private void createUpdateWrapper() {
-        phase = "Update Wrapper Creation";
+        setPhase("Update Wrapper Creation");
 
         Platform.runLater(() -> {
             progressBar = new ProgressBar();
@@ -174,18 +185,13 @@ public class Launcher extends Application {
     }
 
     public URLClassLoader createClassLoader() {
-        List<URL> libs = manifest.files.stream()
-                .filter(LibraryFile::loadForCurrentPlatform)
-                .map(LibraryFile::toURL)
-                .collect(Collectors.toList());
-
-        return new URLClassLoader(libs.toArray(new URL[libs.size()]));
+        return IndexedClassLoader.create(manifest);
     }
 
     private void launchAppFromManifest() throws Exception {
-        phase = "Application Init";
+        setPhase("Application Init");
         app.init();
-        phase = "Application Start";
+        setPhase("Application Start");
         Platform.runLater(() -> {
             try {
                 launcherWindow.close();
@@ -198,16 +204,12 @@ public class Launcher extends Application {
     }
 
     private void updateManifest() throws Exception {
-        phase = "Update Manifest";
+        setPhase("Update Manifest");
         syncManifest();
     }
 
     public boolean updateAvailable(){
-        List<LibraryFile> needsUpdate = manifest.files.stream()
-                .filter(LibraryFile::loadForCurrentPlatform)
-                .filter(LibraryFile::needsUpdate)
-                .collect(Collectors.toList());
-        return needsUpdate.size() > 0;
+        return manifest.updateNeeded();
     }
 
 //    private void syncFiles() throws Exception {
@@ -253,7 +255,7 @@ public class Launcher extends Application {
 //    }
 
     private void createApplication() throws Exception {
-        phase = "Create Application";
+        setPhase("Create Application");
 
         URLClassLoader classLoader = createClassLoader();
         FXMLLoader.setDefaultClassLoader(classLoader);
@@ -293,24 +295,7 @@ public class Launcher extends Application {
     }
 
     private void syncManifest() throws Exception {
-        URL embeddedManifest = Launcher.class.getResource("/app.xml");
-        manifest = JAXB.unmarshal(embeddedManifest, FXManifest.class);
-
-        if (Files.exists(manifest.getPath()))
-            manifest = JAXB.unmarshal(manifest.getPath().toFile(), FXManifest.class);
-
-        try {
-            FXManifest remoteManifest = JAXB.unmarshal(manifest.getFXAppURI(), FXManifest.class);
-
-            if (remoteManifest == null) {
-                log.info(String.format("No remote manifest at %s", manifest.getFXAppURI()));
-            } else if (!remoteManifest.equals(manifest)) {
-                manifest = remoteManifest;
-                JAXB.marshal(manifest, manifest.getPath().toFile());
-            }
-        } catch (Exception ex) {
-            log.log(Level.WARNING, "Unable to update manifest", ex);
-        }
+        manifest = new ManifestLoader().load();
     }
 
     private static class ThrowableWrapper {
@@ -17,8 +17,20 @@ public class LauncherParams extends Application.Parameters {
     private List<String> rawArgs;
     private Map<String, String> namedParams;
     private List<String> unnamedParams;
+    private BackgroundUpdater backgroundUpdater;
+    private StartupTimings startupTimings;
 
     public LauncherParams(Application.Parameters delegate, FXManifest manifest) {
+        this(delegate, manifest, null);
+    }
+
+    public LauncherParams(Application.Parameters delegate, FXManifest manifest, BackgroundUpdater backgroundUpdater) {
+        this(delegate, manifest, backgroundUpdater, StartupTimings.get());
+    }
+
+    public LauncherParams(Application.Parameters delegate, FXManifest manifest, BackgroundUpdater backgroundUpdater, StartupTimings startupTimings) {
+        this.backgroundUpdater = backgroundUpdater;
+        this.startupTimings = startupTimings;
         rawArgs = new ArrayList<>();
         namedParams = new HashMap<>();
         unnamedParams = new ArrayList<>();
@@ -61,6 +73,25 @@ public class LauncherParams extends Application.Parameters {
         return namedParams;
     }
 
+    /**
+     * The updater that stages new versions while the application is running. This is only available
+     * when the manifest selects the <code>background</code> update mode and the installed version
+     * was started without waiting for the update check.
+     *
+     * @return the background updater, or null if the application was not started in background update mode
+     */
+    public BackgroundUpdater getBackgroundUpdater() {
+        return backgroundUpdater;
+    }
+
+    /**
+     * The time spent in each phase of the startup. The last phase, <code>Application Start</code>, ends when
+     * the primary stage is shown, so the timings are complete once {@link StartupTimings#isFinished()} returns true.
+     */
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
     /**
      * Returns true if the specified string is a named parameter of the
      * form: --name=value
@@ -9,6 +9,9 @@ import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.Alert;
@@ -19,17 +22,17 @@ import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class LauncherWindowController extends AnchorPane{
+    private static final Logger log = Logger.getLogger("Launcher");
 
     private Stage launcherWindow;
     private Application app;
@@ -41,12 +44,16 @@ public class LauncherWindowController extends AnchorPane{
     private ProgressBar progressBar;
 
     private FXManifest manifest;
+    private BackgroundUpdater backgroundUpdater;
+    private ClassPreloader preloader;
+    private URLClassLoader classLoader;
 
     private static Stage primaryStage;
 
     private DoubleProperty progress = new SimpleDoubleProperty(-1);
     private LongProperty totalBytesToUpdate = new SimpleLongProperty(-1);
     private LongProperty totalBytesToUpdateWritten = new SimpleLongProperty(0);
+    private DoubleProperty bytesPerSecond = new SimpleDoubleProperty(0);
 
     private static final long MEGABYTE = 1024L * 1024L;
 
@@ -71,13 +78,17 @@ public class LauncherWindowController extends AnchorPane{
                         totalBytesToUpdateWritten.floatValue() / 1024,
                         totalBytesToUpdate.floatValue() / 1024
                     );
+                if (bytesPerSecond.get() > 0) {
+                    long remaining = (long) Math.ceil(Math.max(0, totalBytesToUpdate.get() - totalBytesToUpdateWritten.get()) / bytesPerSecond.get());
+                    s += String.format(" at %.2f MegaBytes/s, %d:%02d left", bytesPerSecond.get() / MEGABYTE, remaining / 60, remaining % 60);
+                }
             } else if (totalBytesToUpdate.get() == -1) {
                 s = "Loading";
             } else {
                 s = "No updates available";
             }
             return s;
-        }, totalBytesToUpdate, totalBytesToUpdateWritten);
+        }, totalBytesToUpdate, totalBytesToUpdateWritten, bytesPerSecond);
 
         progressBar = getProgressBar();
         progressBar.progressProperty().bind(progress);
@@ -89,66 +100,112 @@ public class LauncherWindowController extends AnchorPane{
     }
 
     public void launch() throws Exception {
-        UpdateManifestService updateManifestService = new UpdateManifestService();
-
-        updateManifestService.setOnSucceeded(e->{
-            try {
-                manifest = updateManifestService.get();
-            } catch (InterruptedException e1) {
-                e1.printStackTrace(); // TODO handle exception
-            } catch (ExecutionException e1) {
-                e1.printStackTrace(); // TODO handle exception
+        StartupTimings.get().begin("Load Manifest");
+        LocalManifestService localManifestService = new LocalManifestService();
+
+        localManifestService.setOnSucceeded(e -> {
+            FXManifest local = localManifestService.getValue();
+            preloader = localManifestService.getPreloader();
+            if (localManifestService.isUpToDate()) {
+                // Start the installed version right away and look for a new version while it runs
+                manifest = local;
+                backgroundUpdater = new BackgroundUpdater(manifest);
+                launchApp();
+            } else {
+                updateManifest(local);
             }
+        });
+        localManifestService.setOnFailed(e -> localManifestService.getException().printStackTrace()); // TODO handle exception
 
-            if (updateAvailable() && userWantsToUpdate()){
-                SyncFilesService syncFilesService = new SyncFilesService(manifest, totalBytesToUpdate, totalBytesToUpdateWritten, progress);
+        new Thread(localManifestService).start();
+    }
 
-                syncFilesService.setOnSucceeded(syncSuc->{
-                    Boolean success = null;
-                    try {
-                        success = syncFilesService.get();
-                    } catch (InterruptedException e1) {
-                        e1.printStackTrace(); // TODO handle exception
-                    } catch (ExecutionException e1) {
-                        e1.printStackTrace(); // TODO handle exception
-                    }
+    private void updateManifest(FXManifest local) {
+        StartupTimings timings = StartupTimings.get();
+        timings.begin("Update Manifest");
+        UpdateManifestService updateManifestService = new UpdateManifestService(local);
 
-                    if (!success){
-                        // TODO report to user
-                    }
+        updateManifestService.setOnSucceeded(e->{
+            manifest = updateManifestService.getValue();
 
-                    try {
-                        createApplication();
-                        launchAppFromManifest();
-                    } catch (Exception e1) {
-                        e1.printStackTrace(); // TODO handle exception
-                    }
+            if (!updateManifestService.isUpdateNeeded()) {
+                launchApp();
+            } else if (!userWantsToUpdate()) {
+                manifest = local;
+                launchApp();
+            } else {
+                timings.begin("File Synchronization");
+                // The preloaded class loader keeps the installed files open, which would stop them from being replaced
+                if (preloader != null) {
+                    preloader.cancel();
+                    preloader = null;
+                }
+                SyncFilesService syncFilesService = new SyncFilesService(manifest,
+                        new FXProgressSink(totalBytesToUpdate, totalBytesToUpdateWritten, progress, bytesPerSecond),
+                        updateManifestService.getSession());
+
+                syncFilesService.setOnSucceeded(syncSuc->{
+                    if (!syncFilesService.getValue())
+                        launchInstalledVersion(local, null);
+                    else
+                        launchApp();
                 });
+                syncFilesService.setOnFailed(syncFail -> launchInstalledVersion(local, syncFilesService.getException()));
 
                 new Thread(syncFilesService).start();
-
-            }else {
-                try {
-                    createApplication();
-                    launchAppFromManifest();
-                } catch (Exception e1) {
-                    e1.printStackTrace(); // TODO handle exception
-                }
             }
         });
+        updateManifestService.setOnFailed(e -> launchInstalledVersion(local, updateManifestService.getException()));
 
         new Thread(updateManifestService).start();
     }
 
+    /**
+     * Tell the user the update could not be downloaded and launch the installed version, which the failed
+     * synchronization left untouched.
+     */
+    private void launchInstalledVersion(FXManifest local, Throwable error) {
+        log.log(Level.WARNING, "Unable to update, launching the installed version", error);
+        manifest = local;
+
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Update Failed");
+        alert.setHeaderText("The update could not be downloaded.");
+        alert.setContentText(error == null
+                ? "Some files could not be downloaded. The current version will be started."
+                : String.format("%s%nThe current version will be started.", error.getMessage()));
+        alert.showAndWait();
+
+        launchApp();
+    }
+
+    /**
+     * Create and initialize the application off the JavaFX thread, then start it.
+     */
+    private void launchApp() {
+        Task<Void> createApplicationTask = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                createApplication();
+                launchAppFromManifest();
+                return null;
+            }
+        };
+        createApplicationTask.setOnSucceeded(e -> {
+            if (backgroundUpdater != null)
+                backgroundUpdater.start();
+        });
+        createApplicationTask.setOnFailed(e -> createApplicationTask.getException().printStackTrace()); // TODO handle exception
+
+        new Thread(createApplicationTask).start();
+    }
+
     public boolean updateAvailable(){
-        List<LibraryFile> needsUpdate = manifest.files.stream()
-                .filter(LibraryFile::loadForCurrentPlatform)
-                .filter(LibraryFile::needsUpdate)
-                .collect(Collectors.toList());
-        return needsUpdate.size() > 0;
+        return manifest.updateNeeded();
     }
 
     private boolean userWantsToUpdate(){
+        StartupTimings.get().begin("Update Prompt");
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Update Available");
         alert.setHeaderText("There is an update available.");
@@ -169,16 +226,21 @@ public class LauncherWindowController extends AnchorPane{
     }
 
     public URLClassLoader createClassLoader() {
-        List<URL> libs = manifest.files.stream()
-                .filter(LibraryFile::loadForCurrentPlatform)
-                .map(LibraryFile::toURL)
-                .collect(Collectors.toList());
-
-        return new URLClassLoader(libs.toArray(new URL[libs.size()]));
+        if (preloader != null) {
+            URLClassLoader preloaded = preloader.matches(manifest) ? preloader.getClassLoader() : null;
+            if (preloaded != null)
+                return preloaded;
+            preloader.cancel();
+        }
+        return IndexedClassLoader.create(manifest);
     }
 
     public void createApplication() throws Exception {
+        StartupTimings.get().begin("Create Application");
         URLClassLoader classLoader = createClassLoader();
+        this.classLoader = classLoader;
+        ClassPreloader.record(classLoader, manifest);
+        LibraryCache.recordLaunch(manifest);
         FXMLLoader.setDefaultClassLoader(classLoader);
         Thread.currentThread().setContextClassLoader(classLoader);
         Platform.runLater(() -> Thread.currentThread().setContextClassLoader(classLoader));
@@ -187,20 +249,46 @@ public class LauncherWindowController extends AnchorPane{
     }
 
     public void launchAppFromManifest() throws Exception {
+        StartupTimings timings = StartupTimings.get();
+        timings.begin("Application Init");
         app.init();
         Platform.runLater(() -> {
             try {
+                timings.begin("Application Start");
                 if (launcherWindow != null){
                     launcherWindow.close();
                 }
-                ParametersImpl.registerParameters(app, new LauncherParams(mainApplication.getParameters(), manifest));
+                ParametersImpl.registerParameters(app, new LauncherParams(mainApplication.getParameters(), manifest, backgroundUpdater, timings));
                 app.start(primaryStage);
+                finishTimingsWhenShown(timings);
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
         });
     }
 
+    /**
+     * The startup is complete when the application shows its primary stage, which may happen after start returns.
+     * That is also where the recording of the startup classes ends.
+     */
+    private void finishTimingsWhenShown(StartupTimings timings) {
+        if (primaryStage.isShowing()) {
+            timings.finish(manifest);
+            ClassPreloader.save(classLoader, manifest);
+            return;
+        }
+
+        primaryStage.showingProperty().addListener(new ChangeListener<Boolean>() {
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean showing) {
+                if (showing) {
+                    observable.removeListener(this);
+                    timings.finish(manifest);
+                    ClassPreloader.save(classLoader, manifest);
+                }
+            }
+        });
+    }
+
     public void stop() throws Exception {
         if (app != null){
             app.stop();
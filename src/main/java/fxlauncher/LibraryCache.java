@@ -0,0 +1,418 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A library directory shared by every launcher on the machine, enabled with the <code>sharedCache</code>
+ * element of the manifest or the <code>fxlauncher.sharedCache</code> system property.
+ *
+ * Files are stored under their checksum rather than their name, as
+ * <code>&lt;algorithm&gt;/&lt;xx&gt;/&lt;checksum&gt;-&lt;size&gt;.&lt;ext&gt;</code>, and never change once they
+ * are published. A launcher that needs a file holds a lock on it while it downloads, so when several
+ * processes need the same file at once, the first one downloads it and the others wait and then use it.
+ * A file is downloaded to a staging path in the cache and only moved to its final name after it was verified.
+ *
+ * Each version of an application that was launched from the cache is recorded as a view, a copy of its manifest
+ * under <code>views/&lt;launchClass&gt;</code>. Files shared between versions are stored once, and switching to
+ * another complete version only means making its manifest the current one, see {@link #activate(FXManifest)}.
+ * When a size limit is configured with <code>sharedCacheSize</code> (in megabytes), files that are not used by
+ * a running launcher or by the most recently launched version of an application are removed, least recently used first.
+ *
+ * Every user of the cache needs write access to the directory.
+ */
+public class LibraryCache {
+    private static final Logger log = Logger.getLogger("Launcher");
+    public static final String PROPERTY = "fxlauncher.sharedCache";
+    public static final String SIZE_PROPERTY = "fxlauncher.sharedCacheSize";
+    private static final String VIEWS = "views";
+
+    /**
+     * A file lock is held by the whole process, so threads of the same process are kept apart by these locks.
+     */
+    private static final Map<Path, ReentrantLock> processLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Shared locks on the views of the versions this process runs, held until it exits.
+     */
+    private static final Map<Path, FileLock> viewLocks = new ConcurrentHashMap<>();
+
+    private final Path root;
+
+    public LibraryCache(Path root) {
+        this.root = root.toAbsolutePath();
+    }
+
+    /**
+     * The shared cache configured for the given manifest, or null if it keeps its files in the working directory.
+     */
+    public static LibraryCache forManifest(FXManifest manifest) {
+        String root = System.getProperty(PROPERTY, manifest.sharedCache);
+        return root == null || root.trim().isEmpty() ? null : new LibraryCache(Paths.get(root.trim()));
+    }
+
+    /**
+     * Record the launch of the given version and remove unused files if the cache is over its size limit.
+     * This happens on a background thread and does nothing if the manifest does not use a shared cache.
+     */
+    public static void recordLaunch(FXManifest manifest) {
+        LibraryCache cache = manifest.getLibraryCache();
+        if (cache == null)
+            return;
+
+        Thread thread = new Thread(() -> {
+            try {
+                cache.recordView(manifest);
+                long limit = Long.getLong(SIZE_PROPERTY, manifest.sharedCacheSize);
+                if (limit > 0)
+                    cache.evict(limit * 1024 * 1024);
+            } catch (IOException ex) {
+                log.log(Level.WARNING, String.format("Unable to maintain the shared cache %s", cache.root), ex);
+            }
+        }, "fxlauncher-cache");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * The path of the given library file in the cache, whether it has been published yet or not.
+     */
+    public Path resolve(LibraryFile lib) {
+        String name = String.format("%016x", lib.checksum);
+        String extension = "";
+        int dot = lib.file.lastIndexOf('.');
+        if (dot > Math.max(lib.file.lastIndexOf('/'), lib.file.lastIndexOf('\\')))
+            extension = lib.file.substring(dot);
+        return root.resolve(lib.getAlgorithm().name())
+                .resolve(name.substring(name.length() - 2))
+                .resolve(String.format("%s-%d%s", name, lib.size, extension));
+    }
+
+    /**
+     * Find a published file by its checksum alone, such as the version a delta applies to.
+     *
+     * @return the path of the file, or null if no file with that checksum was published
+     */
+    public Path find(HashAlgorithm algorithm, long checksum) throws IOException {
+        String name = String.format("%016x", checksum);
+        Path bucket = root.resolve(algorithm.name()).resolve(name.substring(name.length() - 2));
+        if (!Files.isDirectory(bucket))
+            return null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket, name + "-*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(".lock") && !fileName.endsWith(".part") && !fileName.endsWith(".meta"))
+                    return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if the given file has been published, with the expected contents. A published file that
+     * does not match is removed so it can be downloaded again. Only call this while holding the lock for the file.
+     */
+    public boolean contains(LibraryFile lib) throws IOException {
+        Path path = resolve(lib);
+        if (!Files.exists(path))
+            return false;
+        if (Files.size(path) == lib.size && lib.hash(path) == lib.checksum)
+            return true;
+
+        log.warning(String.format("Removing corrupt file %s from the shared cache", path));
+        Files.deleteIfExists(path);
+        return false;
+    }
+
+    /**
+     * Move a verified staging file to its final name in the cache.
+     */
+    public void publish(LibraryFile lib, Path staging) throws IOException {
+        Path path = resolve(lib);
+        try {
+            Files.move(staging, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(staging, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Lock the given file against other threads and other processes using the cache, waiting until the lock
+     * is available. The lock is released by closing the returned object.
+     */
+    public Lock lock(LibraryFile lib) throws IOException {
+        Path path = resolve(lib);
+        Files.createDirectories(path.getParent());
+        return lock(path, true);
+    }
+
+    /**
+     * Record that the given version is in use. The view is created the first time, and its modification time
+     * is the last time the version was launched. This process keeps a shared lock on the view until it exits,
+     * so the files of the version are not removed while it runs.
+     */
+    public void recordView(FXManifest manifest) throws IOException {
+        Path view = viewPath(manifest);
+        if (!Files.exists(view)) {
+            Files.createDirectories(view.getParent());
+            ManifestXml.write(manifest, view);
+        }
+        Files.setLastModifiedTime(view, FileTime.fromMillis(System.currentTimeMillis()));
+
+        if (!viewLocks.containsKey(view)) {
+            FileChannel channel = FileChannel.open(view, StandardOpenOption.READ);
+            try {
+                viewLocks.put(view, channel.lock(0, Long.MAX_VALUE, true));
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * The versions of the given application that can be launched from the cache without downloading anything,
+     * most recently used first.
+     */
+    public List<FXManifest> getVersions(String launchClass) throws IOException {
+        List<FXManifest> versions = new ArrayList<>();
+        for (Path view : views(root.resolve(VIEWS).resolve(launchClass))) {
+            try {
+                FXManifest manifest = ManifestXml.read(view);
+                if (isComplete(manifest))
+                    versions.add(manifest);
+            } catch (IOException ex) {
+                log.log(Level.FINE, String.format("Ignoring unreadable view %s", view), ex);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Check if every file the given version needs on this platform is in the cache. Lazy files are downloaded
+     * when they are needed, so the version can be launched without them.
+     */
+    public boolean isComplete(FXManifest manifest) throws IOException {
+        for (LibraryFile lib : manifest.files) {
+            if (!lib.loadForCurrentPlatform() || lib.isLazy())
+                continue;
+            Path path = resolve(lib);
+            if (!Files.exists(path) || Files.size(path) != lib.size)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Make a version from {@link #getVersions(String)} the current version, so it is launched the next time
+     * the launcher starts. Nothing is copied or downloaded, the files of the version are already in the cache.
+     */
+    public void activate(FXManifest version) throws IOException {
+        if (!isComplete(version))
+            throw new IOException(String.format("Version %s.%s.%s is no longer complete in the shared cache %s",
+                    version.majorVersion, version.minorVersion, version.buildVersion, root));
+        ManifestLoader.save(version);
+        ManifestLoader.clearValidators(version);
+    }
+
+    /**
+     * Remove files until the cache holds at most the given number of bytes. The files of the most recently launched
+     * version of every application and of every version a launcher is running are kept, even if that exceeds the limit.
+     * The other files are removed in the order they were last used, and views of versions that lost a file are removed with them.
+     */
+    public void evict(long maxBytes) throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+        Path viewsRoot = root.resolve(VIEWS);
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).filter(path -> !path.startsWith(viewsRoot)).collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(".lock") && !name.endsWith(".part") && !name.endsWith(".meta"))
+                    sizes.put(path, Files.size(path));
+            }
+        }
+        long total = sizes.values().stream().mapToLong(Long::longValue).sum();
+        if (total <= maxBytes)
+            return;
+
+        Set<Path> keep = new HashSet<>();
+        Map<Path, Long> lastUsed = new HashMap<>();
+        Map<Path, List<Path>> viewFiles = new HashMap<>();
+        if (Files.isDirectory(viewsRoot)) {
+            try (Stream<Path> apps = Files.list(viewsRoot)) {
+                for (Path app : apps.collect(Collectors.toList())) {
+                    boolean latest = true;
+                    for (Path view : views(app)) {
+                        List<Path> files;
+                        try {
+                            files = ManifestXml.read(view).files.stream().map(this::resolve).collect(Collectors.toList());
+                        } catch (IOException ex) {
+                            log.log(Level.FINE, String.format("Ignoring unreadable view %s", view), ex);
+                            continue;
+                        }
+                        long used = Files.getLastModifiedTime(view).toMillis();
+                        for (Path file : files)
+                            lastUsed.merge(file, used, Math::max);
+                        if (latest || isRunning(view))
+                            keep.addAll(files);
+                        else
+                            viewFiles.put(view, files);
+                        latest = false;
+                    }
+                }
+            }
+        }
+
+        List<Path> candidates = sizes.keySet().stream().filter(path -> !keep.contains(path)).collect(Collectors.toList());
+        Map<Path, Long> order = new HashMap<>();
+        for (Path path : candidates)
+            order.put(path, lastUsed.containsKey(path) ? lastUsed.get(path) : Files.getLastModifiedTime(path).toMillis());
+        candidates.sort(Comparator.comparingLong(order::get));
+
+        Set<Path> evicted = new HashSet<>();
+        for (Path path : candidates) {
+            if (total <= maxBytes)
+                break;
+            try (Lock lock = lock(path, false)) {
+                if (lock == null)
+                    continue;
+                Files.deleteIfExists(path);
+                total -= sizes.get(path);
+                evicted.add(path);
+            } catch (IOException ex) {
+                // On Windows a file that is open cannot be deleted, it is tried again after the next launch
+                log.log(Level.FINE, String.format("Unable to remove %s from the shared cache", path), ex);
+            }
+        }
+
+        for (Map.Entry<Path, List<Path>> view : viewFiles.entrySet())
+            if (view.getValue().stream().anyMatch(evicted::contains))
+                Files.deleteIfExists(view.getKey());
+
+        log.info(String.format("Removed %d files from the shared cache %s, %d MB left", evicted.size(), root, total / (1024 * 1024)));
+    }
+
+    private Path viewPath(FXManifest manifest) {
+        return root.resolve(VIEWS).resolve(manifest.launchClass).resolve(String.format("%s.%s.%s-%08x.xml",
+                manifest.majorVersion, manifest.minorVersion, manifest.buildVersion, manifest.files.hashCode()));
+    }
+
+    /**
+     * The views in the given directory, most recently used first.
+     */
+    private static List<Path> views(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return new ArrayList<>();
+        Map<Path, Long> used = new HashMap<>();
+        try (Stream<Path> views = Files.list(directory)) {
+            for (Path view : views.filter(path -> path.getFileName().toString().endsWith(".xml")).collect(Collectors.toList()))
+                used.put(view, Files.getLastModifiedTime(view).toMillis());
+        }
+        List<Path> views = new ArrayList<>(used.keySet());
+        views.sort(Comparator.comparingLong((Path view) -> used.get(view)).reversed());
+        return views;
+    }
+
+    /**
+     * Check if a launcher holds a shared lock on the given view because it is running that version.
+     */
+    private static boolean isRunning(Path view) throws IOException {
+        if (viewLocks.containsKey(view))
+            return true;
+        try (FileChannel channel = FileChannel.open(view, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null)
+                return true;
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Lock the file at the given path in the cache.
+     *
+     * @param wait true to wait for the lock, false to return null if it is held by someone else
+     */
+    private static Lock lock(Path path, boolean wait) throws IOException {
+        Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+
+        ReentrantLock processLock = processLocks.computeIfAbsent(lockPath, p -> new ReentrantLock());
+        if (wait) {
+            try {
+                processLock.lockInterruptibly();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while waiting for the lock on " + path);
+            }
+        } else if (!processLock.tryLock()) {
+            return null;
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = wait ? channel.lock() : channel.tryLock();
+            if (fileLock == null) {
+                channel.close();
+                processLock.unlock();
+                return null;
+            }
+            return new Lock(processLock, channel, fileLock);
+        } catch (IOException | RuntimeException ex) {
+            if (channel != null)
+                channel.close();
+            processLock.unlock();
+            throw ex;
+        }
+    }
+
+    public static class Lock implements AutoCloseable {
+        private final ReentrantLock processLock;
+        private final FileChannel channel;
+        private final FileLock fileLock;
+
+        Lock(ReentrantLock processLock, FileChannel channel, FileLock fileLock) {
+            this.processLock = processLock;
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        public void close() throws IOException {
+            try {
+                fileLock.release();
+                channel.close();
+            } finally {
+                processLock.unlock();
+            }
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package fxlauncher;
 
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlList;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.Adler32;
+import java.util.zip.Checksum;
 
 public class LibraryFile {
     @XmlAttribute
@@ -21,11 +25,59 @@ public class LibraryFile {
     Long size;
 	@XmlAttribute
 	OS os;
+    @XmlAttribute
+    Long modified;
+    @XmlAttribute
+    HashAlgorithm algorithm;
+    /**
+     * The archive this file is also published in together with other small files, relative to the manifest uri.
+     */
+    @XmlAttribute
+    String bundle;
+    /**
+     * The size of the gzip compressed copy of this file, published next to it with a <code>.gz</code> suffix.
+     */
+    @XmlAttribute
+    Long gzipSize;
+    /**
+     * A lazy file is not downloaded with the other files, but by the class loader the first time one of its
+     * packages is used.
+     */
+    @XmlAttribute
+    Boolean lazy;
+    /**
+     * The packages, or more precisely the directories holding files, of a lazy file, with slashes as separators.
+     */
+    @XmlAttribute
+    @XmlList
+    List<String> packages;
+    @XmlElement(name = "delta")
+    List<DeltaFile> deltas = new ArrayList<>();
+
+    /**
+     * The algorithm of the manifest this file belongs to, used when the file does not specify one.
+     */
+    HashAlgorithm defaultAlgorithm;
+
+    /**
+     * The manifest this file belongs to, which decides where the file is stored.
+     */
+    FXManifest manifest;
 
     public boolean needsUpdate() {
-        Path path = Paths.get(file);
+        return needsUpdate(null);
+    }
+
+    /**
+     * Check if this file is missing or differs from the manifest entry. When an index is given,
+     * the checksum is only calculated if the file changed since it was last verified.
+     */
+    public boolean needsUpdate(VerificationIndex index) {
+        Path path = toPath();
         try {
-            return !Files.exists(path) || Files.size(path) != size || checksum(path) != checksum;
+            if (index != null)
+                return index.needsUpdate(this, path);
+            return !Files.exists(path) || Files.size(path) != size || hash(path) != checksum;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -35,9 +87,20 @@ public class LibraryFile {
     }
 
 	public LibraryFile(Path basepath, Path file) throws IOException {
+        this(basepath, file, null);
+    }
+
+    /**
+     * Create an entry for a file, using the given algorithm for the checksum.
+     *
+     * @param defaultAlgorithm the algorithm of the manifest, or null for Adler32
+     */
+	public LibraryFile(Path basepath, Path file, HashAlgorithm defaultAlgorithm) throws IOException {
         this.file = basepath.relativize(file).toString();
         this.size = Files.size(file);
-        this.checksum = checksum(file);
+        this.modified = Files.getLastModifiedTime(file).toMillis();
+        this.defaultAlgorithm = defaultAlgorithm;
+        this.checksum = hash(file);
 
 	    String filename = file.getFileName().toString().toLowerCase();
 	    Pattern osPattern = Pattern.compile(".*-(linux|win|mac).jar");
@@ -46,31 +109,112 @@ public class LibraryFile {
 		    this.os = OS.valueOf(osMatcher.group(1));
     }
 
+    /**
+     * Inherit the algorithm of the manifest.
+     */
+    void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+        if (parent instanceof FXManifest) {
+            manifest = (FXManifest) parent;
+            defaultAlgorithm = manifest.algorithm;
+        }
+    }
+
+    /**
+     * The algorithm the checksum of this file was calculated with. Manifests written before the
+     * algorithm could be chosen use Adler32.
+     */
+    public HashAlgorithm getAlgorithm() {
+        if (algorithm != null)
+            return algorithm;
+        return defaultAlgorithm != null ? defaultAlgorithm : HashAlgorithm.adler32;
+    }
+
+    /**
+     * Create a new instance of the checksum used for this file, so it can be calculated
+     * while the file is being downloaded.
+     */
+    public Checksum newChecksum() {
+        return getAlgorithm().newChecksum();
+    }
+
+    /**
+     * Calculate the checksum of a file with the algorithm used for this file.
+     */
+    public long hash(Path path) throws IOException {
+        return getAlgorithm().hash(path);
+    }
+
 	public boolean loadForCurrentPlatform() {
 		return os == null || os == OS.current;
 	}
 
+    /**
+     * Check if this file is downloaded on demand. That requires the manifest to list its packages, so the class
+     * loader knows when it is needed. With class data sharing every file is on the class path of the child JVM,
+     * so all of them are downloaded up front.
+     */
+    public boolean isLazy() {
+        return Boolean.TRUE.equals(lazy) && packages != null && !packages.isEmpty()
+                && (manifest == null || !manifest.classDataSharing);
+    }
+
+    /**
+     * The shared cache this file is stored in, or null if it is stored in the working directory.
+     */
+    public LibraryCache getCache() {
+        return manifest != null ? manifest.getLibraryCache() : null;
+    }
+
+    /**
+     * The path of this library file, in the shared cache if the manifest uses one and otherwise
+     * relative to the working directory.
+     */
+    public Path toPath() {
+        LibraryCache cache = getCache();
+        return cache != null ? cache.resolve(this) : Paths.get(file);
+    }
+
+    /**
+     * The path a new version of this file is downloaded to before it is verified and moved into place.
+     * It lives in the same directory as the file itself so the final move can be atomic.
+     */
+    public Path getStagingPath() {
+        Path path = toPath();
+        return path.resolveSibling(path.getFileName() + ".part");
+    }
+
+    /**
+     * Find a delta that can be applied to the version of this file with the given checksum.
+     *
+     * @return the delta, or null if none was published for that version
+     */
+    public DeltaFile findDelta(long fromChecksum) {
+        for (DeltaFile delta : deltas)
+            if (delta.from == fromChecksum)
+                return delta;
+        return null;
+    }
+
     public URL toURL() {
         try {
-            return Paths.get(file).toFile().toURI().toURL();
+            return toPath().toFile().toURI().toURL();
         } catch (MalformedURLException whaat) {
             throw new RuntimeException(whaat);
         }
     }
 
+    /**
+     * Calculate the Adler32 checksum of a file, as used by manifests that do not specify an algorithm.
+     */
     public static long checksum(Path path) throws IOException {
-        try (InputStream input = Files.newInputStream(path)) {
-            Adler32 checksum = new Adler32();
-            byte[] buf = new byte[16384];
-
-            int read;
-            while ((read = input.read(buf)) > -1)
-                checksum.update(buf, 0, read);
-
-            return checksum.getValue();
-        }
+        return HashAlgorithm.adler32.hash(path);
     }
 
+    /**
+     * Two entries are equal when every published attribute is, so a manifest that only changes how a file is
+     * delivered, such as its bundle, compressed copy, deltas or algorithm, still differs from the cached one.
+     * The modification time is left out, because it only tells CreateManifest whether to hash the file again.
+     */
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
@@ -79,14 +223,31 @@ public class LibraryFile {
 
         if (!file.equals(that.file)) return false;
         if (!checksum.equals(that.checksum)) return false;
-        return size.equals(that.size);
-
+        if (!size.equals(that.size)) return false;
+        if (os != that.os) return false;
+        if (algorithm != that.algorithm) return false;
+        if (bundle != null ? !bundle.equals(that.bundle) : that.bundle != null) return false;
+        if (gzipSize != null ? !gzipSize.equals(that.gzipSize) : that.gzipSize != null) return false;
+        if (lazy != null ? !lazy.equals(that.lazy) : that.lazy != null) return false;
+        if (packages != null ? !packages.equals(that.packages) : that.packages != null) return false;
+        return deltas.equals(that.deltas);
     }
 
+    /**
+     * Enums are hashed by name, because the hash is saved with the recorded startup classes and cached versions
+     * and has to be the same in the next JVM.
+     */
     public int hashCode() {
         int result = file.hashCode();
         result = 31 * result + checksum.hashCode();
         result = 31 * result + size.hashCode();
+        result = 31 * result + (os != null ? os.name().hashCode() : 0);
+        result = 31 * result + (algorithm != null ? algorithm.name().hashCode() : 0);
+        result = 31 * result + (bundle != null ? bundle.hashCode() : 0);
+        result = 31 * result + (gzipSize != null ? gzipSize.hashCode() : 0);
+        result = 31 * result + (lazy != null ? lazy.hashCode() : 0);
+        result = 31 * result + (packages != null ? packages.hashCode() : 0);
+        result = 31 * result + deltas.hashCode();
         return result;
     }
 }
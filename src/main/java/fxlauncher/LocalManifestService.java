@@ -0,0 +1,38 @@
+package fxlauncher;
+
+import javafx.concurrent.Task;
+
+/**
+ * Loads the installed manifest, activates a version staged by an earlier launch and starts preloading its
+ * startup classes. Activating moves the staged files into place, and checking whether the installed files
+ * are complete may checksum them, so this runs off the JavaFX thread.
+ */
+public class LocalManifestService extends Task<FXManifest> {
+    private volatile ClassPreloader preloader;
+    private volatile boolean upToDate;
+
+    @Override
+    protected FXManifest call() throws Exception {
+        FXManifest manifest = BackgroundUpdater.activatePending(new ManifestLoader().loadLocal());
+        preloader = ClassPreloader.start(manifest);
+        if (manifest.updateMode == UpdateMode.background)
+            StartupTimings.get().begin("File Verification");
+        upToDate = manifest.updateMode == UpdateMode.background && manifest.cached && !manifest.updateNeeded();
+        return manifest;
+    }
+
+    /**
+     * @return the preloader for the installed files, or null if no startup classes were recorded for them
+     */
+    public ClassPreloader getPreloader() {
+        return preloader;
+    }
+
+    /**
+     * @return true if the manifest uses the background update mode and its files are in place, so the installed
+     * version can be started without waiting for the update check
+     */
+    public boolean isUpToDate() {
+        return upToDate;
+    }
+}
@@ -0,0 +1,224 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the manifest for the application. The embedded manifest tells where the application
+ * lives, the cached manifest from the last launch is used as the current version, and the
+ * remote manifest is fetched to see if there is a newer one.
+ *
+ * The remote manifest is requested with the ETag and Last-Modified validators of the cached copy,
+ * so an unchanged manifest is answered with 304 Not Modified and the cached copy is used as is.
+ */
+public class ManifestLoader {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    private URLConnection lastConnection;
+    private Exception remoteError;
+    private FXManifest local;
+    private HttpSession session;
+
+    /**
+     * Load the current manifest and check for a newer version. A newer remote manifest is returned but only
+     * replaces the cached manifest when the files on disk already match it. Otherwise it is written by
+     * {@link FileSynchronizer#sync()} once its files are in place, so a failed or declined update leaves the
+     * installed version as it was. The installed version is available from {@link #getLocal()}.
+     */
+    public FXManifest load() throws IOException {
+        return load(BackgroundUpdater.activatePending(loadLocal()));
+    }
+
+    /**
+     * Check for a newer version of the installed manifest, which was already loaded with {@link #loadLocal()}
+     * and activated with {@link BackgroundUpdater#activatePending(FXManifest)}. See {@link #load()}.
+     */
+    public FXManifest load(FXManifest installed) {
+        FXManifest manifest = installed;
+        local = manifest;
+        session = new HttpSession(manifest);
+
+        try {
+            FXManifest remoteManifest = fetchRemote(manifest, session);
+
+            if (remoteManifest == null) {
+                log.info(String.format("No remote manifest at %s", manifest.getFXAppURI()));
+            } else if (remoteManifest == manifest) {
+                log.fine(String.format("Manifest at %s is not modified", manifest.getFXAppURI()));
+            } else if (remoteManifest.equals(manifest)) {
+                saveValidators(remoteManifest);
+            } else {
+                remoteManifest.shareVerificationIndex(manifest);
+                manifest = remoteManifest;
+                // The validators are only stored with the cached manifest, so a later fetch does not answer
+                // 304 Not Modified for a version that was never installed
+                if (!manifest.updateNeeded()) {
+                    save(manifest);
+                    saveValidators(manifest);
+                }
+            }
+        } catch (Exception ex) {
+            remoteError = ex;
+            log.log(Level.WARNING, "Unable to update manifest", ex);
+        }
+
+        return manifest;
+    }
+
+    /**
+     * The manifest of the installed version as of the last {@link #load()}, which is the manifest to launch
+     * when the update to the manifest returned by {@link #load()} fails or is declined.
+     */
+    public FXManifest getLocal() {
+        return local;
+    }
+
+    /**
+     * The session the last {@link #load()} checked the remote manifest with, to be used for the downloads of the update.
+     */
+    public HttpSession getSession() {
+        return session;
+    }
+
+    /**
+     * The reason the last {@link #load()} could not check the remote manifest, or null if the check succeeded.
+     */
+    public Exception getRemoteError() {
+        return remoteError;
+    }
+
+    /**
+     * Load the manifest of the version that is installed locally, without touching the network.
+     * This is the cached manifest from the last launch, or the embedded manifest on the first launch.
+     * The cached manifest is read from its binary copy when that is up to date.
+     */
+    public FXManifest loadLocal() throws IOException {
+        URL embeddedManifest = ManifestLoader.class.getResource("/app.xml");
+        FXManifest manifest = ManifestXml.read(embeddedManifest);
+
+        Path path = manifest.getPath();
+        if (Files.exists(path)) {
+            Path binaryPath = manifest.getBinaryPath();
+            manifest = BinaryManifest.read(path, binaryPath);
+            if (manifest == null) {
+                manifest = ManifestXml.read(path);
+                BinaryManifest.write(manifest, path, binaryPath);
+            }
+            manifest.cached = true;
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Make the manifest the cached manifest.
+     */
+    public static void save(FXManifest manifest) throws IOException {
+        ManifestXml.write(manifest, manifest.getPath());
+        BinaryManifest.write(manifest, manifest.getPath(), manifest.getBinaryPath());
+    }
+
+    /**
+     * Fetch the remote manifest with a conditional request. The validators of the response are not
+     * stored until {@link #saveValidators(FXManifest)} is called, which should happen once the remote
+     * manifest has been made the current manifest.
+     *
+     * @param manifest the current manifest
+     * @param session  the session of the update
+     * @return the current manifest instance if the remote manifest was not modified, otherwise the remote manifest
+     */
+    public FXManifest fetchRemote(FXManifest manifest, HttpSession session) throws IOException {
+        Path validatorsPath = getValidatorsPath(manifest);
+        Properties validators = new Properties();
+        if (manifest.cached && Files.exists(validatorsPath)) {
+            try (InputStream input = Files.newInputStream(validatorsPath)) {
+                validators.load(input);
+            }
+        }
+
+        Semaphore permit = session.acquire(manifest.getFXAppURI());
+        URLConnection connection;
+        FXManifest remoteManifest;
+        try {
+            connection = session.open(manifest.getFXAppURI());
+
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection) connection;
+                if (manifest.getFXAppURI().toString().equals(validators.getProperty("uri"))) {
+                    if (validators.getProperty("etag") != null)
+                        http.setRequestProperty("If-None-Match", validators.getProperty("etag"));
+                    if (validators.getProperty("lastModified") != null)
+                        http.setRequestProperty("If-Modified-Since", validators.getProperty("lastModified"));
+                }
+
+                if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    HttpSession.release(http);
+                    return manifest;
+                }
+            }
+
+            try (InputStream input = connection.getInputStream()) {
+                remoteManifest = ManifestXml.read(input);
+            }
+        } finally {
+            permit.release();
+        }
+
+        lastConnection = connection;
+        return remoteManifest;
+    }
+
+    /**
+     * Store the validators of the last fetched remote manifest, so the next fetch can be conditional.
+     */
+    public void saveValidators(FXManifest remoteManifest) {
+        if (!(lastConnection instanceof HttpURLConnection))
+            return;
+
+        String etag = lastConnection.getHeaderField("ETag");
+        String lastModified = lastConnection.getHeaderField("Last-Modified");
+        Path validatorsPath = getValidatorsPath(remoteManifest);
+
+        try {
+            if (etag == null && lastModified == null) {
+                Files.deleteIfExists(validatorsPath);
+                return;
+            }
+
+            Properties validators = new Properties();
+            validators.setProperty("uri", remoteManifest.getFXAppURI().toString());
+            if (etag != null)
+                validators.setProperty("etag", etag);
+            if (lastModified != null)
+                validators.setProperty("lastModified", lastModified);
+
+            try (OutputStream output = Files.newOutputStream(validatorsPath)) {
+                validators.store(output, "fxlauncher manifest validators");
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to save manifest validators to %s", validatorsPath), ex);
+        }
+    }
+
+    /**
+     * Forget the stored validators, so the next fetch downloads the remote manifest in full.
+     */
+    public static void clearValidators(FXManifest manifest) throws IOException {
+        Files.deleteIfExists(getValidatorsPath(manifest));
+    }
+
+    private static Path getValidatorsPath(FXManifest manifest) {
+        return Paths.get(String.format("%s.validators", manifest.launchClass));
+    }
+}
@@ -0,0 +1,301 @@
+package fxlauncher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads and writes the manifest XML with a streaming parser. The format is the same as the one
+ * produced by the JAXB annotations on {@link FXManifest}, but reading it does not need a JAXB
+ * context or any reflection, which made up most of the time spent on the manifest at startup.
+ *
+ * Unknown elements and attributes are skipped, so a manifest written by a newer version can still be read.
+ */
+public class ManifestXml {
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private ManifestXml() {
+    }
+
+    public static FXManifest read(URL url) throws IOException {
+        try (InputStream input = url.openStream()) {
+            return read(input);
+        }
+    }
+
+    public static FXManifest read(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            return read(input);
+        }
+    }
+
+    public static FXManifest read(InputStream input) throws IOException {
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new BufferedInputStream(input));
+            try {
+                reader.nextTag();
+                if (!"Application".equals(reader.getLocalName()))
+                    throw new IOException(String.format("Expected an Application element but found %s", reader.getLocalName()));
+                return readManifest(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IllegalArgumentException ex) {
+            throw new IOException("Unable to read manifest", ex);
+        }
+    }
+
+    /**
+     * Write the manifest to a temporary file next to the given path and move it into place,
+     * so a reader never sees a partially written manifest.
+     */
+    public static void write(FXManifest manifest, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tmp)) {
+            write(manifest, output);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void write(FXManifest manifest, OutputStream output) throws IOException {
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(output);
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(buffered, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("Application");
+            attribute(writer, "uri", manifest.uri);
+            attribute(writer, "launch", manifest.launchClass);
+            attribute(writer, "algorithm", manifest.algorithm);
+
+            for (LibraryFile lib : manifest.files) {
+                writer.writeCharacters("\n    ");
+                if (lib.deltas.isEmpty())
+                    writer.writeEmptyElement("lib");
+                else
+                    writer.writeStartElement("lib");
+                attribute(writer, "file", lib.file);
+                attribute(writer, "checksum", lib.checksum);
+                attribute(writer, "size", lib.size);
+                attribute(writer, "os", lib.os);
+                attribute(writer, "modified", lib.modified);
+                attribute(writer, "algorithm", lib.algorithm);
+                attribute(writer, "bundle", lib.bundle);
+                attribute(writer, "gzipSize", lib.gzipSize);
+                attribute(writer, "lazy", lib.lazy);
+                attribute(writer, "packages", lib.packages == null || lib.packages.isEmpty() ? null : String.join(" ", lib.packages));
+                if (!lib.deltas.isEmpty()) {
+                    for (DeltaFile delta : lib.deltas) {
+                        writer.writeCharacters("\n        ");
+                        writer.writeEmptyElement("delta");
+                        attribute(writer, "file", delta.file);
+                        attribute(writer, "from", delta.from);
+                        attribute(writer, "size", delta.size);
+                    }
+                    writer.writeCharacters("\n    ");
+                    writer.writeEndElement();
+                }
+            }
+
+            for (URI mirror : manifest.mirrors)
+                element(writer, "mirror", mirror);
+
+            element(writer, "updateText", manifest.updateText);
+            element(writer, "updateLabelStyle", manifest.updateLabelStyle);
+            element(writer, "progressBarStyle", manifest.progressBarStyle);
+            element(writer, "wrapperStyle", manifest.wrapperStyle);
+            element(writer, "parameters", manifest.parameters);
+            element(writer, "majorVersion", manifest.majorVersion);
+            element(writer, "minorVersion", manifest.minorVersion);
+            element(writer, "buildVersion", manifest.buildVersion);
+            element(writer, "releaseNotes", manifest.releaseNotes);
+            element(writer, "downloadThreads", manifest.downloadThreads);
+            element(writer, "connectionsPerHost", manifest.connectionsPerHost);
+            element(writer, "downloadRetries", manifest.downloadRetries);
+            element(writer, "updateMode", manifest.updateMode);
+            element(writer, "classDataSharing", manifest.classDataSharing);
+            element(writer, "connectTimeout", manifest.connectTimeout);
+            element(writer, "readTimeout", manifest.readTimeout);
+            element(writer, "sharedCache", manifest.sharedCache);
+            element(writer, "sharedCacheSize", manifest.sharedCacheSize);
+
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.close();
+            buffered.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException("Unable to write manifest", ex);
+        }
+    }
+
+    private static FXManifest readManifest(XMLStreamReader reader) throws XMLStreamException {
+        FXManifest manifest = new FXManifest();
+        String uri = reader.getAttributeValue(null, "uri");
+        manifest.uri = uri == null ? null : URI.create(uri);
+        manifest.launchClass = reader.getAttributeValue(null, "launch");
+        manifest.algorithm = algorithm(reader.getAttributeValue(null, "algorithm"));
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "lib":
+                    manifest.files.add(readLibrary(reader, manifest));
+                    break;
+                case "mirror":
+                    manifest.mirrors.add(URI.create(reader.getElementText().trim()));
+                    break;
+                case "updateText":
+                    manifest.updateText = reader.getElementText();
+                    break;
+                case "updateLabelStyle":
+                    manifest.updateLabelStyle = reader.getElementText();
+                    break;
+                case "progressBarStyle":
+                    manifest.progressBarStyle = reader.getElementText();
+                    break;
+                case "wrapperStyle":
+                    manifest.wrapperStyle = reader.getElementText();
+                    break;
+                case "parameters":
+                    manifest.parameters = reader.getElementText();
+                    break;
+                case "majorVersion":
+                    manifest.majorVersion = reader.getElementText();
+                    break;
+                case "minorVersion":
+                    manifest.minorVersion = reader.getElementText();
+                    break;
+                case "buildVersion":
+                    manifest.buildVersion = reader.getElementText();
+                    break;
+                case "releaseNotes":
+                    manifest.releaseNotes = reader.getElementText();
+                    break;
+                case "downloadThreads":
+                    manifest.downloadThreads = Integer.parseInt(reader.getElementText().trim());
+                    break;
+                case "connectionsPerHost":
+                    manifest.connectionsPerHost = Integer.parseInt(reader.getElementText().trim());
+                    break;
+                case "downloadRetries":
+                    manifest.downloadRetries = Integer.parseInt(reader.getElementText().trim());
+                    break;
+                case "updateMode":
+                    manifest.updateMode = UpdateMode.valueOf(reader.getElementText().trim());
+                    break;
+                case "classDataSharing":
+                    manifest.classDataSharing = Boolean.parseBoolean(reader.getElementText().trim());
+                    break;
+                case "connectTimeout":
+                    manifest.connectTimeout = Integer.parseInt(reader.getElementText().trim());
+                    break;
+                case "readTimeout":
+                    manifest.readTimeout = Integer.parseInt(reader.getElementText().trim());
+                    break;
+                case "sharedCache":
+                    manifest.sharedCache = reader.getElementText().trim();
+                    break;
+                case "sharedCacheSize":
+                    manifest.sharedCacheSize = Long.parseLong(reader.getElementText().trim());
+                    break;
+                default:
+                    skip(reader);
+            }
+        }
+        return manifest;
+    }
+
+    private static LibraryFile readLibrary(XMLStreamReader reader, FXManifest manifest) throws XMLStreamException {
+        LibraryFile lib = new LibraryFile();
+        lib.file = reader.getAttributeValue(null, "file");
+        lib.checksum = longValue(reader.getAttributeValue(null, "checksum"));
+        lib.size = longValue(reader.getAttributeValue(null, "size"));
+        String os = reader.getAttributeValue(null, "os");
+        lib.os = os == null ? null : OS.valueOf(os);
+        lib.modified = longValue(reader.getAttributeValue(null, "modified"));
+        lib.algorithm = algorithm(reader.getAttributeValue(null, "algorithm"));
+        lib.bundle = reader.getAttributeValue(null, "bundle");
+        lib.gzipSize = longValue(reader.getAttributeValue(null, "gzipSize"));
+        String lazy = reader.getAttributeValue(null, "lazy");
+        lib.lazy = lazy == null ? null : Boolean.valueOf(lazy.trim());
+        String packages = reader.getAttributeValue(null, "packages");
+        lib.packages = packages == null ? null : new ArrayList<>(Arrays.asList(packages.trim().split("\\s+")));
+        lib.defaultAlgorithm = manifest.algorithm;
+        lib.manifest = manifest;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("delta".equals(reader.getLocalName())) {
+                lib.deltas.add(new DeltaFile(reader.getAttributeValue(null, "file"),
+                        longValue(reader.getAttributeValue(null, "from")), longValue(reader.getAttributeValue(null, "size"))));
+            }
+            skip(reader);
+        }
+        return lib;
+    }
+
+    /**
+     * Skip to the end of the current element, including any nested elements.
+     */
+    private static void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private static Long longValue(String value) {
+        return value == null ? null : Long.valueOf(value.trim());
+    }
+
+    private static HashAlgorithm algorithm(String value) {
+        return value == null ? null : HashAlgorithm.of(value.trim());
+    }
+
+    private static void attribute(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        if (value != null)
+            writer.writeAttribute(name, value.toString());
+    }
+
+    private static void element(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        if (value == null)
+            return;
+        writer.writeCharacters("\n    ");
+        writer.writeStartElement(name);
+        writer.writeCharacters(value.toString());
+        writer.writeEndElement();
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,205 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses where to download library files from when the manifest lists mirrors in addition to its own uri.
+ *
+ * All locations are probed in parallel the first time a file is requested, and are then tried in order
+ * of their response time. Large files are spread over the mirrors that respond about as fast as the fastest
+ * one. A location that fails repeatedly is skipped for the rest of the synchronization, unless every
+ * location has failed.
+ *
+ * The probes go through the {@link HttpSession} of the downloads, so the connection a probe opens is kept alive
+ * and reused by the first download from that location.
+ */
+public class MirrorSelector {
+    private static final Logger log = Logger.getLogger("Launcher");
+
+    /**
+     * Files at least this large are spread over the fastest mirrors instead of all going to the fastest one.
+     */
+    private static final long LARGE_FILE = 4 * 1024 * 1024;
+    private static final int MAX_FAILURES = 2;
+    private static final int PROBE_TIMEOUT = 3000;
+
+    private final HttpSession session;
+    private final List<Mirror> mirrors;
+    private final AtomicInteger spread = new AtomicInteger();
+    private volatile boolean probed;
+
+    public MirrorSelector(FXManifest manifest, HttpSession session) {
+        this.session = session;
+
+        Map<String, Mirror> unique = new LinkedHashMap<>();
+        for (URI mirror : manifest.mirrors)
+            unique.putIfAbsent(baseURI(mirror).toString(), new Mirror(baseURI(mirror)));
+        unique.putIfAbsent(manifest.uri.toString(), new Mirror(manifest.uri));
+        this.mirrors = new ArrayList<>(unique.values());
+    }
+
+    /**
+     * Probe every location once, unless the manifest only has its own uri.
+     */
+    public void probe() {
+        if (probed)
+            return;
+
+        synchronized (this) {
+            if (probed)
+                return;
+
+            if (mirrors.size() > 1) {
+                ExecutorService pool = Executors.newFixedThreadPool(mirrors.size(), runnable -> {
+                    Thread thread = new Thread(runnable, "fxlauncher-mirror-probe");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try {
+                    List<Future<?>> probes = new ArrayList<>();
+                    for (Mirror mirror : mirrors)
+                        probes.add(pool.submit(() -> probe(mirror)));
+                    for (Future<?> probe : probes)
+                        probe.get(PROBE_TIMEOUT * 2, TimeUnit.MILLISECONDS);
+                } catch (Exception ex) {
+                    log.log(Level.FINE, "Mirror probe did not complete", ex);
+                } finally {
+                    pool.shutdownNow();
+                }
+
+                log.info(String.format("Mirrors by response time: %s", ranked(mirrors).stream()
+                        .map(m -> m.latency == Long.MAX_VALUE ? m.base + " (unreachable)" : String.format("%s (%d ms)", m.base, m.latency))
+                        .collect(Collectors.joining(", "))));
+            }
+
+            probed = true;
+        }
+    }
+
+    /**
+     * The base URIs to download the given file from, in the order they should be tried.
+     */
+    public List<URI> candidates(LibraryFile lib) {
+        probe();
+
+        List<Mirror> ranked = ranked(mirrors);
+        List<Mirror> healthy = ranked.stream().filter(m -> m.failures.get() < MAX_FAILURES).collect(Collectors.toList());
+        List<Mirror> order = healthy.isEmpty() ? ranked : healthy;
+
+        if (lib.size != null && lib.size >= LARGE_FILE && order.size() > 1) {
+            long best = order.get(0).latency;
+            int fast = 1;
+            while (fast < order.size() && isComparable(order.get(fast).latency, best))
+                fast++;
+            if (fast > 1) {
+                order = new ArrayList<>(order);
+                Collections.rotate(order.subList(0, fast), -Math.floorMod(spread.getAndIncrement(), fast));
+            }
+        }
+
+        return order.stream().map(m -> m.base).collect(Collectors.toList());
+    }
+
+    /**
+     * Record that a download from the given location failed.
+     */
+    public void failed(URI base) {
+        for (Mirror mirror : mirrors) {
+            if (mirror.base.equals(base) && mirror.failures.incrementAndGet() == MAX_FAILURES)
+                log.warning(String.format("Skipping mirror %s after %d failures", base, MAX_FAILURES));
+        }
+    }
+
+    /**
+     * Record that a download from the given location succeeded.
+     */
+    public void succeeded(URI base) {
+        for (Mirror mirror : mirrors)
+            if (mirror.base.equals(base))
+                mirror.failures.set(0);
+    }
+
+    private void probe(Mirror mirror) {
+        long start = System.nanoTime();
+        try {
+            if ("file".equals(mirror.base.getScheme())) {
+                if (!Files.isDirectory(Paths.get(mirror.base)))
+                    throw new IOException(String.format("%s is not a directory", mirror.base));
+            } else {
+                Semaphore permit = session.acquire(mirror.base);
+                try {
+                    URLConnection connection = session.open(mirror.base, PROBE_TIMEOUT);
+                    if (connection instanceof HttpURLConnection) {
+                        HttpURLConnection http = (HttpURLConnection) connection;
+                        http.setRequestMethod("HEAD");
+                        int status = http.getResponseCode();
+                        // The probed connection stays open for the first download from the mirror
+                        HttpSession.release(http);
+                        // Any answer short of a server error means the server is up, a directory listing may well be forbidden
+                        if (status >= 500)
+                            throw new IOException(String.format("%s answered %d", mirror.base, status));
+                    } else {
+                        connection.connect();
+                    }
+                } finally {
+                    permit.release();
+                }
+            }
+            mirror.latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.INFO, String.format("Mirror %s is not available", mirror.base), ex);
+            mirror.failures.set(MAX_FAILURES);
+        }
+    }
+
+    /**
+     * Two response times are comparable if the slower one is at most twice the faster, or within 50 ms of it.
+     */
+    private static boolean isComparable(long latency, long best) {
+        return latency != Long.MAX_VALUE && (latency <= best * 2 || latency - best <= 50);
+    }
+
+    private static List<Mirror> ranked(List<Mirror> mirrors) {
+        List<Mirror> ranked = new ArrayList<>(mirrors);
+        ranked.sort(Comparator.comparingLong(m -> m.latency));
+        return ranked;
+    }
+
+    /**
+     * Library paths are resolved against the mirror, so it has to end with a slash like the manifest uri.
+     */
+    private static URI baseURI(URI uri) {
+        String path = uri.toString();
+        return path.endsWith("/") ? uri : URI.create(path + "/");
+    }
+
+    private static class Mirror {
+        final URI base;
+        final AtomicInteger failures = new AtomicInteger();
+        volatile long latency = Long.MAX_VALUE;
+
+        Mirror(URI base) {
+            this.base = base;
+        }
+    }
+}
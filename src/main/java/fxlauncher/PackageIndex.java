@@ -0,0 +1,224 @@
+package fxlauncher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps every package, or more precisely every directory that holds at least one file, to the
+ * jars that contain it. The index is built when the files are synchronized and saved next to
+ * the cached manifest as <code>&lt;launchClass&gt;.packages</code>, so the class loader can go
+ * straight to the owning jar instead of probing every jar on the class path.
+ *
+ * A class in <code>META-INF/versions/&lt;n&gt;</code> of a multi-release jar is also indexed under its unversioned
+ * package, so a class that only exists for newer Java versions is found too.
+ */
+public class PackageIndex {
+    private static final Logger log = Logger.getLogger("Launcher");
+    private static final String HEADER = "# fxlauncher package index v2";
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final int[] NONE = new int[0];
+
+    private final List<String> jars = new ArrayList<>();
+    private final List<Long> checksums = new ArrayList<>();
+    private final Map<String, int[]> packages = new LinkedHashMap<>();
+
+    private PackageIndex() {
+    }
+
+    /**
+     * Load the package index for the platform files in the manifest, building and saving a new
+     * index if there is none or if it was built for a different set of files.
+     */
+    public static PackageIndex forManifest(FXManifest manifest) throws IOException {
+        List<LibraryFile> libs = manifest.files.stream()
+                .filter(LibraryFile::loadForCurrentPlatform)
+                .collect(Collectors.toList());
+
+        Path path = manifest.getPackageIndexPath();
+        PackageIndex index = load(path);
+        if (index == null || !index.matches(libs)) {
+            index = build(libs);
+            index.save(path);
+        }
+        return index;
+    }
+
+    /**
+     * Build an index by reading the central directory of every jar. Lazy files are indexed by the packages
+     * the manifest lists for them, whether or not they were downloaded yet.
+     */
+    public static PackageIndex build(List<LibraryFile> libs) throws IOException {
+        Map<String, List<Integer>> owners = new LinkedHashMap<>();
+        PackageIndex index = new PackageIndex();
+
+        for (int i = 0; i < libs.size(); i++) {
+            LibraryFile lib = libs.get(i);
+            index.jars.add(lib.file);
+            index.checksums.add(lib.checksum);
+
+            if (lib.isLazy()) {
+                for (String pkg : lib.packages)
+                    owners.computeIfAbsent(pkg, p -> new ArrayList<>(1)).add(i);
+                continue;
+            }
+
+            try (ZipFile zip = new ZipFile(lib.toPath().toFile())) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory())
+                        continue;
+                    for (String pkg : packagesOf(entry.getName())) {
+                        List<Integer> jars = owners.computeIfAbsent(pkg, p -> new ArrayList<>(1));
+                        if (jars.isEmpty() || jars.get(jars.size() - 1) != i)
+                            jars.add(i);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Integer>> owner : owners.entrySet())
+            index.packages.put(owner.getKey(), owner.getValue().stream().mapToInt(Integer::intValue).toArray());
+
+        return index;
+    }
+
+    /**
+     * Read an index from disk.
+     *
+     * @return the index, or null if it is missing or unreadable
+     */
+    public static PackageIndex load(Path path) {
+        if (!Files.exists(path))
+            return null;
+
+        PackageIndex index = new PackageIndex();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()))
+                return null;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts[0].equals("jar")) {
+                    index.jars.add(parts[1]);
+                    index.checksums.add(Long.valueOf(parts[2]));
+                } else if (parts[0].equals("pkg")) {
+                    index.packages.put(parts[1], Arrays.stream(parts[2].split(",")).mapToInt(Integer::parseInt).toArray());
+                }
+            }
+            return index;
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.WARNING, String.format("Ignoring unreadable package index %s", path), ex);
+            return null;
+        }
+    }
+
+    public void save(Path path) {
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (int i = 0; i < jars.size(); i++) {
+                    writer.write(String.format("jar\t%s\t%d", jars.get(i), checksums.get(i)));
+                    writer.newLine();
+                }
+                for (Map.Entry<String, int[]> pkg : packages.entrySet()) {
+                    writer.write(String.format("pkg\t%s\t%s", pkg.getKey(),
+                            Arrays.stream(pkg.getValue()).mapToObj(String::valueOf).collect(Collectors.joining(","))));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to save package index %s", path), ex);
+        }
+    }
+
+    /**
+     * @return true if this index was built for exactly the given files, in the same order
+     */
+    public boolean matches(List<LibraryFile> libs) {
+        if (libs.size() != jars.size())
+            return false;
+        for (int i = 0; i < libs.size(); i++)
+            if (!libs.get(i).file.equals(jars.get(i)) || !libs.get(i).checksum.equals(checksums.get(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * @param pkg a package name with slashes, as returned by {@link #packageOf(String)}
+     * @return the positions of the jars containing the package in class path order, or an empty array
+     */
+    public int[] jarsFor(String pkg) {
+        int[] owners = packages.get(pkg);
+        return owners == null ? NONE : owners;
+    }
+
+    /**
+     * The packages of a jar, in the order they first appear. <code>META-INF</code> itself is left out, since every
+     * jar has a manifest there and looking it up would otherwise download every lazy file.
+     */
+    public static List<String> packagesOf(Path jar) throws IOException {
+        Set<String> packages = new LinkedHashSet<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory())
+                    packages.addAll(packagesOf(entry.getName()));
+            }
+        }
+        packages.remove("META-INF");
+        return new ArrayList<>(packages);
+    }
+
+    /**
+     * The package of an entry, and for a versioned entry of a multi-release jar also the package it is loaded as.
+     */
+    private static List<String> packagesOf(String entryName) {
+        String pkg = packageOf(entryName);
+        if (!entryName.startsWith(VERSIONS))
+            return Collections.singletonList(pkg);
+
+        int slash = entryName.indexOf('/', VERSIONS.length());
+        if (slash == -1)
+            return Collections.singletonList(pkg);
+        return Arrays.asList(pkg, packageOf(entryName.substring(slash + 1)));
+    }
+
+    /**
+     * The package of a class file or resource, which is the path up to the last slash.
+     * Files in the root of a jar belong to the empty package.
+     */
+    public static String packageOf(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        return slash == -1 ? "" : entryName.substring(0, slash);
+    }
+}
@@ -0,0 +1,111 @@
+package fxlauncher;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Collects the byte counts reported by the download workers and publishes a snapshot to a
+ * {@link ProgressSink} at a fixed frame rate. Workers only add to a {@link LongAdder}, so they never
+ * contend with each other or wait for the sink, no matter how many downloads run at once.
+ *
+ * A snapshot is only published when the byte count changed since the last one, or while the transfer rate
+ * is still falling because no bytes arrived. The transfer rate is an exponential moving average, so the estimated
+ * time remaining does not jump around with every frame, but it does go up when the transfer stalls.
+ * Nothing is scheduled when there is nothing to write.
+ */
+public class ProgressAggregator implements LongConsumer, AutoCloseable {
+    /**
+     * How quickly the transfer rate follows changes, as the time it takes to move most of the way to a new rate.
+     */
+    private static final double RATE_SMOOTHING_SECONDS = 2;
+    private static final double MIN_BYTES_PER_SECOND = 1;
+
+    private final long total;
+    private final ProgressSink sink;
+    private final long frameNanos;
+    private final LongAdder written = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+    private long lastWritten = -1;
+    private long lastTime;
+    private double bytesPerSecond;
+
+    public ProgressAggregator(long total, ProgressSink sink) {
+        this(total, sink, 30);
+    }
+
+    /**
+     * @param total           the number of bytes that will be written
+     * @param sink            receives the snapshots
+     * @param framesPerSecond how often a snapshot is published at most
+     */
+    public ProgressAggregator(long total, ProgressSink sink, int framesPerSecond) {
+        this.total = total;
+        this.sink = sink;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, framesPerSecond);
+    }
+
+    /**
+     * Publish the first snapshot and start publishing at the frame rate, unless there is nothing to write.
+     */
+    public synchronized ProgressAggregator start() {
+        if (scheduler == null) {
+            lastTime = System.nanoTime();
+            publish(lastTime);
+            if (total <= 0)
+                return this;
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fxlauncher-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(() -> publish(System.nanoTime()), frameNanos, frameNanos, TimeUnit.NANOSECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Add the number of bytes written. A negative count takes back bytes of a failed attempt.
+     */
+    public void accept(long bytes) {
+        written.add(bytes);
+    }
+
+    /**
+     * Stop publishing, after publishing the final count.
+     */
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        publish(System.nanoTime());
+    }
+
+    public DownloadProgress snapshot() {
+        return new DownloadProgress(written.sum(), total, bytesPerSecond);
+    }
+
+    private synchronized void publish(long now) {
+        long current = written.sum();
+        if (current == lastWritten && bytesPerSecond == 0)
+            return;
+
+        double elapsed = (now - lastTime) / 1e9;
+        if (lastWritten >= 0 && elapsed > 0) {
+            double rate = Math.max(0, current - lastWritten) / elapsed;
+            double weight = 1 - Math.exp(-elapsed / RATE_SMOOTHING_SECONDS);
+            bytesPerSecond = bytesPerSecond == 0 ? rate : bytesPerSecond + weight * (rate - bytesPerSecond);
+            // A stalled transfer decays towards zero without ever reaching it
+            if (bytesPerSecond < MIN_BYTES_PER_SECOND)
+                bytesPerSecond = 0;
+        }
+
+        lastWritten = current;
+        lastTime = now;
+        sink.publish(new DownloadProgress(current, total, bytesPerSecond));
+    }
+}
@@ -0,0 +1,10 @@
+package fxlauncher;
+
+/**
+ * Receives progress snapshots from a {@link ProgressAggregator}. Snapshots are published from the
+ * aggregator's own thread, so an implementation that updates a user interface has to hand them
+ * over to the UI thread itself.
+ */
+public interface ProgressSink {
+    void publish(DownloadProgress progress);
+}
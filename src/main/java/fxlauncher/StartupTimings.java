@@ -0,0 +1,212 @@
+package fxlauncher;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures how long each phase of the startup takes, from the start of the JVM until the launched
+ * application shows its primary stage. The phases are timed with {@link System#nanoTime()}, and the
+ * time the JVM spent before the launcher was entered is reported as the <code>JVM Startup</code> phase.
+ *
+ * When the startup is finished a report is appended as a single JSON line to
+ * <code>&lt;launchClass&gt;.timings.jsonl</code>. The file is rotated when it grows past 1 MB, keeping
+ * {@value #KEEP_ROTATED} older files. The application can read the timings of the current start through
+ * {@link LauncherParams#getStartupTimings()}.
+ */
+public class StartupTimings {
+    private static final Logger log = Logger.getLogger("Launcher");
+    private static final StartupTimings instance = new StartupTimings();
+    private static final long MAX_REPORT_SIZE = 1024 * 1024;
+    private static final int KEEP_ROTATED = 2;
+
+    private final long created = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private String currentPhase;
+    private long currentStart;
+    private long jvmStart = -1;
+    private long finished = -1;
+
+    /**
+     * The timings of the current start.
+     */
+    public static StartupTimings get() {
+        return instance;
+    }
+
+    /**
+     * End the current phase, if any, and start a new one.
+     */
+    public synchronized void begin(String phase) {
+        if (finished >= 0)
+            return;
+        long now = System.nanoTime();
+        endPhase(now);
+        currentPhase = phase;
+        currentStart = now;
+    }
+
+    /**
+     * End the last phase and write the report for the given manifest. Only the first call has any effect.
+     */
+    public void finish(FXManifest manifest) {
+        synchronized (this) {
+            if (finished >= 0)
+                return;
+            finished = System.nanoTime();
+            endPhase(finished);
+            long uptime = TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+            jvmStart = Math.min(created, System.nanoTime() - uptime);
+            phases.add(0, new Phase("JVM Startup", jvmStart - created, created - jvmStart));
+        }
+
+        if (manifest != null && manifest.launchClass != null) {
+            Thread writer = new Thread(() -> write(manifest), "fxlauncher-timings");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * @return true once the launched application has shown its primary stage
+     */
+    public synchronized boolean isFinished() {
+        return finished >= 0;
+    }
+
+    /**
+     * The phases completed so far, in the order they ran.
+     */
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+
+    /**
+     * The time from the start of the JVM until the startup finished, or -1 if it has not finished yet.
+     */
+    public synchronized double getTotalMillis() {
+        return finished >= 0 ? (finished - jvmStart) / 1e6 : -1;
+    }
+
+    /**
+     * The report as a single line of JSON.
+     */
+    public synchronized String toJson(FXManifest manifest) {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"timestamp\":\"").append(Instant.now()).append('"');
+        if (manifest != null) {
+            json.append(",\"launchClass\":");
+            string(json, manifest.launchClass);
+            json.append(",\"version\":");
+            string(json, String.format("%s.%s.%s", manifest.majorVersion, manifest.minorVersion, manifest.buildVersion));
+            json.append(",\"updateMode\":");
+            string(json, String.valueOf(manifest.updateMode));
+        }
+        json.append(",\"java\":");
+        string(json, System.getProperty("java.version"));
+        json.append(",\"classDataSharing\":");
+        string(json, System.getProperty(ClassDataSharing.CHILD_PROPERTY, "off"));
+        json.append(String.format(Locale.ROOT, ",\"totalMillis\":%.3f,\"phases\":[", getTotalMillis()));
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"name\":");
+            string(json, phase.name);
+            json.append(String.format(Locale.ROOT, ",\"startMillis\":%.3f,\"durationMillis\":%.3f}", phase.getStartMillis(), phase.getDurationMillis()));
+        }
+        return json.append("]}").toString();
+    }
+
+    private void endPhase(long now) {
+        if (currentPhase != null) {
+            phases.add(new Phase(currentPhase, currentStart - created, now - currentStart));
+            currentPhase = null;
+        }
+    }
+
+    private void write(FXManifest manifest) {
+        Path path = manifest.getTimingsPath();
+        try {
+            if (Files.exists(path) && Files.size(path) > MAX_REPORT_SIZE)
+                rotate(path);
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(toJson(manifest));
+                writer.newLine();
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, String.format("Unable to write startup timings to %s", path), ex);
+        }
+    }
+
+    private static void rotate(Path path) throws IOException {
+        for (int i = KEEP_ROTATED; i > 0; i--) {
+            Path source = i == 1 ? path : path.resolveSibling(path.getFileName() + "." + (i - 1));
+            if (Files.exists(source))
+                Files.move(source, path.resolveSibling(path.getFileName() + "." + i), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void string(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < 0x20)
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+
+    /**
+     * A completed phase. The start is relative to the point where the launcher was entered,
+     * which makes the <code>JVM Startup</code> phase start at a negative offset.
+     */
+    public static class Phase {
+        private final String name;
+        private final long start;
+        private final long duration;
+
+        Phase(String name, long start, long duration) {
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getStartMillis() {
+            return start / 1e6;
+        }
+
+        public double getDurationMillis() {
+            return duration / 1e6;
+        }
+
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %.1f ms", name, getDurationMillis());
+        }
+    }
+}
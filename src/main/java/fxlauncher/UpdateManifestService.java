@@ -2,44 +2,43 @@ package fxlauncher;
 
 import javafx.concurrent.Task;
 
-import javax.xml.bind.JAXB;
-import java.net.URL;
-import java.nio.file.Files;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 public class UpdateManifestService extends Task<FXManifest> {
-    private static final Logger log = Logger.getLogger("Launcher");
-
-    private FXManifest manifest;
+    private final FXManifest local;
+    private volatile boolean updateNeeded;
+    private volatile HttpSession session;
 
     public UpdateManifestService(){
+        this(null);
+    }
+
+    /**
+     * @param local the installed manifest, already loaded and activated, or null to load it here
+     */
+    public UpdateManifestService(FXManifest local){
+        this.local = local;
     }
 
     @Override
     protected FXManifest call() throws Exception {
+        ManifestLoader loader = new ManifestLoader();
+        FXManifest manifest = local != null ? loader.load(local) : loader.load();
+        session = loader.getSession();
+        StartupTimings.get().begin("File Verification");
+        updateNeeded = manifest.updateNeeded();
+        return manifest;
+    }
 
-        Thread.sleep(3500);
-
-        URL embeddedManifest = Launcher.class.getResource("/app.xml");
-        manifest = JAXB.unmarshal(embeddedManifest, FXManifest.class);
-
-        if (Files.exists(manifest.getPath()))
-            manifest = JAXB.unmarshal(manifest.getPath().toFile(), FXManifest.class);
-
-        try {
-            FXManifest remoteManifest = JAXB.unmarshal(manifest.getFXAppURI(), FXManifest.class);
-
-            if (remoteManifest == null) {
-                log.info(String.format("No remote manifest at %s", manifest.getFXAppURI()));
-            } else if (!remoteManifest.equals(manifest)) {
-                manifest = remoteManifest;
-                JAXB.marshal(manifest, manifest.getPath().toFile());
-            }
-        } catch (Exception ex) {
-            log.log(Level.WARNING, "Unable to update manifest", ex);
-        }
+    /**
+     * @return true if the files of the loaded manifest are not all in place
+     */
+    public boolean isUpdateNeeded() {
+        return updateNeeded;
+    }
 
-        return manifest;
+    /**
+     * @return the session the manifest was checked with, for the downloads of the update
+     */
+    public HttpSession getSession() {
+        return session;
     }
 }
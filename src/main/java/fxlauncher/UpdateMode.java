@@ -0,0 +1,16 @@
+package fxlauncher;
+
+/**
+ * How the launcher applies a new version of the application.
+ */
+public enum UpdateMode {
+	/**
+	 * Ask the user and synchronize the new version before the application is started.
+	 */
+	prompt,
+	/**
+	 * Start the installed version right away and stage the new version in the background.
+	 * The staged version is activated on the next start.
+	 */
+	background
+}
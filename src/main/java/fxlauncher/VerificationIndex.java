@@ -0,0 +1,203 @@
+package fxlauncher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the size, modification time, file key, checksum algorithm and checksum of every
+ * library file the last time it was verified. As long as a file still has the same size, modification
+ * time and file key it is trusted without being read again, so a launch with no changes
+ * only costs a stat call per file.
+ *
+ * The index is stored as a tab separated text file next to the cached manifest.
+ */
+public class VerificationIndex {
+    private static final Logger log = Logger.getLogger("Launcher");
+    private static final String HEADER = "# fxlauncher verification index v2";
+    private static final String HEADER_V1 = "# fxlauncher verification index v1";
+
+    private final Path path;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Guards the changes to the entries together with the dirty flag, so a save cannot clear the flag
+     * for a change that is not in its snapshot.
+     */
+    private final Object lock = new Object();
+    private boolean dirty;
+
+    private VerificationIndex(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Load the index from the given path. A missing or unreadable index results in an empty
+     * index, which simply means every file will be checksummed once.
+     */
+    public static VerificationIndex load(Path path) {
+        VerificationIndex index = new VerificationIndex(path);
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (HEADER.equals(line)) {
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = line.split("\t");
+                        if (parts.length == 6)
+                            index.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], HashAlgorithm.valueOf(parts[4]), Long.parseLong(parts[5])));
+                    }
+                } else if (HEADER_V1.equals(line)) {
+                    // Written before the algorithm could be chosen, so every checksum is Adler32
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = line.split("\t");
+                        if (parts.length == 5)
+                            index.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], HashAlgorithm.adler32, Long.parseLong(parts[4])));
+                    }
+                    index.dirty = true;
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.log(Level.WARNING, String.format("Ignoring unreadable verification index %s", path), ex);
+                index.entries.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Check if the library file at the given path differs from the manifest entry. The checksum
+     * is only calculated if the file has changed since it was last verified.
+     */
+    public boolean needsUpdate(LibraryFile lib, Path file) throws IOException {
+        String key = file.toString();
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            synchronized (lock) {
+                if (entries.remove(key) != null)
+                    dirty = true;
+            }
+            return true;
+        }
+
+        if (attrs.size() != lib.size)
+            return true;
+
+        HashAlgorithm algorithm = lib.getAlgorithm();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(attrs, algorithm))
+            return entry.checksum != lib.checksum;
+
+        long checksum = algorithm.hash(file);
+        record(key, new Entry(attrs, algorithm, checksum));
+        return checksum != lib.checksum;
+    }
+
+    /**
+     * Get the checksum of the file at the given path, using the recorded value if the file has not
+     * changed since it was last verified with the same algorithm.
+     */
+    public long checksum(Path file, HashAlgorithm algorithm) throws IOException {
+        String key = file.toString();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(attrs, algorithm))
+            return entry.checksum;
+
+        long checksum = algorithm.hash(file);
+        record(key, new Entry(attrs, algorithm, checksum));
+        return checksum;
+    }
+
+    /**
+     * Record that the file at the given path was just verified to have the given checksum.
+     */
+    public void verified(Path file, HashAlgorithm algorithm, long checksum) throws IOException {
+        record(file.toString(), new Entry(Files.readAttributes(file, BasicFileAttributes.class), algorithm, checksum));
+    }
+
+    private void record(String key, Entry entry) {
+        synchronized (lock) {
+            entries.put(key, entry);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write the index to disk if anything changed since it was loaded or last saved.
+     */
+    public synchronized void save() {
+        Map<String, Entry> snapshot;
+        synchronized (lock) {
+            if (!dirty)
+                return;
+            snapshot = new LinkedHashMap<>(entries);
+            dirty = false;
+        }
+
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    writer.write(String.format("%s\t%d\t%d\t%s\t%s\t%d", e.getKey(), entry.size, entry.modified, entry.fileKey, entry.algorithm, entry.checksum));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            synchronized (lock) {
+                dirty = true;
+            }
+            log.log(Level.WARNING, String.format("Unable to save verification index %s", path), ex);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String fileKey;
+        final HashAlgorithm algorithm;
+        final long checksum;
+
+        Entry(long size, long modified, String fileKey, HashAlgorithm algorithm, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+        }
+
+        Entry(BasicFileAttributes attrs, HashAlgorithm algorithm, long checksum) {
+            this(attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey(attrs), algorithm, checksum);
+        }
+
+        boolean matches(BasicFileAttributes attrs, HashAlgorithm algorithm) {
+            return this.algorithm == algorithm && size == attrs.size() && modified == attrs.lastModifiedTime().toMillis() && fileKey.equals(fileKey(attrs));
+        }
+
+        private static String fileKey(BasicFileAttributes attrs) {
+            Object key = attrs.fileKey();
+            return key == null ? "-" : key.toString().replace('\t', ' ');
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package fxlauncher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming implementation of the 64 bit xxHash algorithm with seed 0. It processes 32 bytes per
+ * round in four independent lanes, which makes it much faster than Adler32 while giving a 64 bit value
+ * that is strong enough to identify file contents.
+ */
+public class XxHash64 implements Checksum {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1, v2, v3, v4;
+    private long total;
+
+    public XxHash64() {
+        reset();
+    }
+
+    public void update(int b) {
+        pending.put((byte) b);
+        total++;
+        if (!pending.hasRemaining())
+            flushPending();
+    }
+
+    public void update(byte[] b, int off, int len) {
+        update(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of the buffer, without copying them to the heap.
+     */
+    public void update(ByteBuffer buffer) {
+        ByteBuffer buf = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int pos = 0;
+        int limit = buf.limit();
+        total += limit;
+
+        if (pending.position() > 0) {
+            while (pos < limit && pending.hasRemaining())
+                pending.put(buf.get(pos++));
+            if (pending.hasRemaining()) {
+                buffer.position(buffer.limit());
+                return;
+            }
+            flushPending();
+        }
+
+        long a = v1, b = v2, c = v3, d = v4;
+        while (limit - pos >= 32) {
+            a = round(a, buf.getLong(pos));
+            b = round(b, buf.getLong(pos + 8));
+            c = round(c, buf.getLong(pos + 16));
+            d = round(d, buf.getLong(pos + 24));
+            pos += 32;
+        }
+        v1 = a;
+        v2 = b;
+        v3 = c;
+        v4 = d;
+
+        while (pos < limit)
+            pending.put(buf.get(pos++));
+
+        buffer.position(buffer.limit());
+    }
+
+    public long getValue() {
+        long hash;
+        if (total >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = v3 + PRIME5;
+        }
+        hash += total;
+
+        int pos = 0;
+        int end = pending.position();
+        while (end - pos >= 8) {
+            hash ^= round(0, pending.getLong(pos));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            pos += 8;
+        }
+        if (end - pos >= 4) {
+            hash ^= (pending.getInt(pos) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            pos += 4;
+        }
+        while (pos < end) {
+            hash ^= (pending.get(pos) & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            pos++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    public void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        total = 0;
+        pending.clear();
+    }
+
+    private void flushPending() {
+        v1 = round(v1, pending.getLong(0));
+        v2 = round(v2, pending.getLong(8));
+        v3 = round(v3, pending.getLong(16));
+        v4 = round(v4, pending.getLong(24));
+        pending.clear();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long merge(long hash, long v) {
+        hash ^= round(0, v);
+        return hash * PRIME1 + PRIME4;
+    }
+}
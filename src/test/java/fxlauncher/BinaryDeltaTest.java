@@ -0,0 +1,210 @@
+package fxlauncher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryDeltaTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void emptyFiles() throws IOException {
+        assertRoundTrip(new byte[0], new byte[0]);
+    }
+
+    @Test
+    public void fromEmptyFile() throws IOException {
+        assertRoundTrip(new byte[0], randomBytes(10000));
+    }
+
+    @Test
+    public void toEmptyFile() throws IOException {
+        assertRoundTrip(randomBytes(10000), new byte[0]);
+    }
+
+    @Test
+    public void identicalFiles() throws IOException {
+        byte[] data = randomBytes(100000);
+        byte[] delta = assertRoundTrip(data, data);
+        assertTrue("Delta of identical files is " + delta.length + " bytes", delta.length < 100);
+    }
+
+    @Test
+    public void appendedContent() throws IOException {
+        byte[] source = randomBytes(100000);
+        byte[] target = concat(source, randomBytes(3000));
+        byte[] delta = assertRoundTrip(source, target);
+        assertTrue(delta.length < 4000);
+    }
+
+    @Test
+    public void truncatedContent() throws IOException {
+        byte[] source = randomBytes(100000);
+        byte[] delta = assertRoundTrip(source, Arrays.copyOf(source, 60001));
+        assertTrue(delta.length < 100);
+    }
+
+    @Test
+    public void changedAndMovedBlocks() throws IOException {
+        byte[] source = randomBytes(100000);
+        byte[] target = concat(Arrays.copyOfRange(source, 50000, 100000), randomBytes(777), Arrays.copyOfRange(source, 0, 49000));
+        target[1234] ^= 1;
+        assertRoundTrip(source, target);
+    }
+
+    @Test
+    public void filesSmallerThanBlock() throws IOException {
+        assertRoundTrip(randomBytes(100), randomBytes(200));
+    }
+
+    @Test
+    public void notADelta() throws IOException {
+        assertRejected(randomBytes(100), randomBytes(1000));
+    }
+
+    @Test
+    public void shortDelta() throws IOException {
+        byte[] source = randomBytes(1000);
+        byte[] delta = delta(source, randomBytes(1000));
+        assertRejected(source, new byte[0]);
+        assertRejected(source, Arrays.copyOf(delta, 3));
+        assertRejected(source, Arrays.copyOf(delta, 5));
+        assertRejected(source, Arrays.copyOf(delta, delta.length - 10));
+    }
+
+    @Test
+    public void unsupportedVersion() throws IOException {
+        byte[] source = randomBytes(1000);
+        byte[] delta = delta(source, source);
+        delta[4] = 99;
+        assertRejected(source, delta);
+    }
+
+    @Test
+    public void corruptInstructions() throws IOException {
+        byte[] source = randomBytes(1000);
+        byte[] delta = delta(source, source);
+        for (int i = 5; i < delta.length; i++)
+            delta[i] ^= 0x55;
+        assertRejected(source, delta);
+    }
+
+    @Test
+    public void copyOutsideSource() throws IOException {
+        byte[] source = randomBytes(1000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(0x46584C44);
+        header.writeByte(1);
+        try (GZIPOutputStream ops = new GZIPOutputStream(bytes)) {
+            // COPY offset 900 length 200, then END
+            ops.write(new byte[] {1, (byte) 0x84, 0x07, (byte) 0xC8, 0x01, 0});
+        }
+        assertRejected(source, bytes.toByteArray());
+    }
+
+    @Test
+    public void createManifestPublishesDeltaFromEarlierVersion() throws IOException {
+        Path previous = folder.newFolder("previous").toPath();
+        Path app = folder.newFolder("app").toPath();
+        byte[] old = randomBytes(200000);
+        byte[] changed = old.clone();
+        System.arraycopy(randomBytes(500), 0, changed, 120000, 500);
+        Files.write(previous.resolve("lib.jar"), old);
+        Files.write(app.resolve("lib.jar"), changed);
+        Files.write(previous.resolve("same.jar"), old);
+        Files.write(app.resolve("same.jar"), old);
+
+        FXManifest manifest = CreateManifest.create(URI.create("http://localhost/"), "test.App", app);
+        CreateManifest.createDeltas(manifest, app, Collections.singletonList(previous));
+
+        LibraryFile same = manifest.files.stream().filter(lib -> lib.file.equals("same.jar")).findFirst().get();
+        assertTrue(same.deltas.isEmpty());
+
+        LibraryFile lib = manifest.files.stream().filter(f -> f.file.equals("lib.jar")).findFirst().get();
+        DeltaFile delta = lib.findDelta(lib.hash(previous.resolve("lib.jar")));
+        assertNotNull(delta);
+        assertEquals(Files.size(app.resolve(delta.file)), (long) delta.size);
+
+        Path result = folder.newFile().toPath();
+        try (InputStream input = Files.newInputStream(app.resolve(delta.file))) {
+            Files.write(result, apply(previous.resolve("lib.jar"), input));
+        }
+        assertArrayEquals(changed, Files.readAllBytes(result));
+        assertEquals(lib.checksum, (Long) lib.hash(result));
+    }
+
+    /**
+     * Check that applying the delta between the two versions to the source gives the target.
+     *
+     * @return the delta
+     */
+    private byte[] assertRoundTrip(byte[] source, byte[] target) throws IOException {
+        byte[] delta = delta(source, target);
+        assertArrayEquals(target, apply(write(source), new ByteArrayInputStream(delta)));
+        return delta;
+    }
+
+    private void assertRejected(byte[] source, byte[] delta) throws IOException {
+        Path sourcePath = write(source);
+        try {
+            apply(sourcePath, new ByteArrayInputStream(delta));
+            fail("Delta of " + delta.length + " bytes was not rejected");
+        } catch (IOException expected) {
+        }
+    }
+
+    private byte[] delta(byte[] source, byte[] target) throws IOException {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        BinaryDelta.create(write(source), write(target), delta);
+        return delta.toByteArray();
+    }
+
+    private static byte[] apply(Path source, InputStream delta) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        long written = BinaryDelta.apply(source, delta, result);
+        assertEquals(result.size(), written);
+        return result.toByteArray();
+    }
+
+    private Path write(byte[] data) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, data);
+        return path;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (byte[] part : parts)
+            result.write(part, 0, part.length);
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,106 @@
+package fxlauncher;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BinaryManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path xmlPath;
+    private Path binaryPath;
+
+    @Before
+    public void setUp() throws IOException {
+        xmlPath = folder.getRoot().toPath().resolve("test.App.xml");
+        binaryPath = folder.getRoot().toPath().resolve("test.App.bin");
+    }
+
+    @Test
+    public void roundTripsEveryField() throws IOException {
+        FXManifest manifest = save(ManifestXmlTest.manifest());
+
+        FXManifest read = BinaryManifest.read(xmlPath, binaryPath);
+
+        assertEquals(manifest, read);
+        ManifestXmlTest.assertManifestsEqual(manifest, read);
+        assertEquals(HashAlgorithm.xxhash64, read.files.get(0).defaultAlgorithm);
+        assertEquals(read, read.files.get(0).manifest);
+    }
+
+    @Test
+    public void bundledManifestRoundTrips() throws IOException {
+        FXManifest manifest = save(ManifestXml.read(BinaryManifestTest.class.getResource("/app.xml")));
+
+        ManifestXmlTest.assertManifestsEqual(manifest, BinaryManifest.read(xmlPath, binaryPath));
+    }
+
+    @Test
+    public void missingCopyIsIgnored() throws IOException {
+        ManifestXml.write(ManifestXmlTest.manifest(), xmlPath);
+
+        assertNull(BinaryManifest.read(xmlPath, binaryPath));
+    }
+
+    @Test
+    public void staleCopyIsIgnoredWhenXmlChanged() throws IOException {
+        FXManifest manifest = save(ManifestXmlTest.manifest());
+        FileTime modified = Files.getLastModifiedTime(xmlPath);
+        // Same size and modification time, so only the content tells the copies apart
+        manifest.buildVersion = "43";
+        ManifestXml.write(manifest, xmlPath);
+        Files.setLastModifiedTime(xmlPath, modified);
+
+        assertNull(BinaryManifest.read(xmlPath, binaryPath));
+        assertEquals("43", ManifestXml.read(xmlPath).buildVersion);
+    }
+
+    @Test
+    public void staleCopyIsIgnoredWhenXmlTouched() throws IOException {
+        save(ManifestXmlTest.manifest());
+        Files.setLastModifiedTime(xmlPath, FileTime.fromMillis(Files.getLastModifiedTime(xmlPath).toMillis() - 10000));
+
+        assertNull(BinaryManifest.read(xmlPath, binaryPath));
+    }
+
+    @Test
+    public void truncatedCopyIsIgnored() throws IOException {
+        save(ManifestXmlTest.manifest());
+        long size = Files.size(binaryPath);
+
+        for (long length : new long[] {size - 1, size / 2, 30, 4, 0}) {
+            try (FileChannel channel = FileChannel.open(binaryPath, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            assertNull("Truncated to " + length, BinaryManifest.read(xmlPath, binaryPath));
+        }
+    }
+
+    @Test
+    public void copyOfOtherFormatVersionIsIgnored() throws IOException {
+        save(ManifestXmlTest.manifest());
+        byte[] data = Files.readAllBytes(binaryPath);
+        data[7]++;
+        Files.write(binaryPath, data);
+
+        assertNull(BinaryManifest.read(xmlPath, binaryPath));
+    }
+
+    private FXManifest save(FXManifest manifest) throws IOException {
+        ManifestXml.write(manifest, xmlPath);
+        BinaryManifest.write(manifest, xmlPath, binaryPath);
+        return manifest;
+    }
+}
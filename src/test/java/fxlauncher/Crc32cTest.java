@@ -0,0 +1,96 @@
+package fxlauncher;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.assertEquals;
+
+public class Crc32cTest {
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 1000, 65536};
+
+    @Test
+    public void referenceVectors() {
+        assertEquals(0xE3069283L, crc("123456789".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0x00000000L, crc(new byte[0]));
+
+        // RFC 3720, appendix B.4
+        byte[] data = new byte[32];
+        assertEquals(0x8A9136AAL, crc(data));
+        Arrays.fill(data, (byte) 0xff);
+        assertEquals(0x62A8AB43L, crc(data));
+        for (int i = 0; i < 32; i++)
+            data[i] = (byte) i;
+        assertEquals(0x46DD794EL, crc(data));
+        for (int i = 0; i < 32; i++)
+            data[i] = (byte) (31 - i);
+        assertEquals(0x113FDB5CL, crc(data));
+    }
+
+    @Test
+    public void matchesJdk() throws Exception {
+        Checksum jdk;
+        try {
+            jdk = (Checksum) Class.forName("java.util.zip.CRC32C").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException("CRC32C is part of the JDK from Java 9 on", ex);
+            return;
+        }
+
+        byte[] data = new byte[65536 + 7];
+        new Random(42).nextBytes(data);
+        for (int length : LENGTHS) {
+            for (int offset : new int[] {0, 1, 7}) {
+                jdk.reset();
+                jdk.update(data, offset, length);
+                long expected = jdk.getValue();
+
+                Crc32c array = new Crc32c();
+                array.update(data, offset, length);
+                assertEquals("array length " + length + " offset " + offset, expected, array.getValue());
+
+                for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(length + offset), ByteBuffer.allocateDirect(length + offset)}) {
+                    buffer.put(data, 0, length + offset).flip().position(offset);
+                    Crc32c crc = new Crc32c();
+                    crc.update(buffer);
+                    assertEquals("buffer length " + length + " offset " + offset, expected, crc.getValue());
+                    assertEquals(0, buffer.remaining());
+                }
+
+                Crc32c bytes = new Crc32c();
+                for (int i = offset; i < offset + length; i++)
+                    bytes.update(data[i]);
+                assertEquals("bytes length " + length + " offset " + offset, expected, bytes.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void hashAlgorithmUsesCrc32c() {
+        Checksum checksum = HashAlgorithm.crc32c.newChecksum();
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        checksum.update(data, 0, data.length);
+        assertEquals(0xE3069283L, checksum.getValue());
+    }
+
+    @Test
+    public void reset() {
+        Crc32c crc = new Crc32c();
+        crc.update(new byte[100], 0, 100);
+        crc.reset();
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.update(data, 0, data.length);
+        assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    private static long crc(byte[] data) {
+        Crc32c crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+}
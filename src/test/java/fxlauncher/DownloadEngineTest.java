@@ -0,0 +1,387 @@
+package fxlauncher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadEngineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private Path served;
+    private Path installed;
+
+    @Before
+    public void createFiles() throws IOException {
+        served = folder.newFolder("served").toPath();
+        installed = folder.newFolder("installed").toPath();
+        Random random = new Random(42);
+        for (int i = 0; i < 4; i++)
+            Files.write(served.resolve(String.format("lib%d.jar", i)), jar(String.format("lib%d", i), random));
+    }
+
+    @After
+    public void stopServers() {
+        for (HttpServer server : servers)
+            server.stop(0);
+    }
+
+    @Test
+    public void interruptedDownloadIsResumedWithRange() throws Exception {
+        URI uri = serve(exchange -> {
+            if (ranges.size() == 1)
+                sendHalf(exchange);
+            else
+                sendRange(exchange);
+        });
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        assertEquals(Collections.singletonList(lib), download(manifest, lib));
+        long partial = Files.size(lib.getStagingPath());
+        assertTrue(partial > 0 && partial < lib.size);
+        assertTrue(Files.exists(metadataPath(lib)));
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertEquals(String.format("bytes=%d-", partial), ranges.get(1));
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void serverIgnoringRangeGetsWholeFile() throws Exception {
+        URI uri = serve(exchange -> {
+            if (ranges.size() == 1)
+                sendHalf(exchange);
+            else
+                send(exchange, 200, served(exchange));
+        });
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        download(manifest, lib);
+        assertTrue(download(manifest, lib).isEmpty());
+        assertTrue(ranges.get(1).startsWith("bytes="));
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void unsatisfiableRangeDiscardsPartial() throws Exception {
+        URI uri = serve(exchange -> {
+            if (ranges.size() == 1)
+                sendHalf(exchange);
+            else if (exchange.getRequestHeaders().containsKey("Range"))
+                send(exchange, 416, new byte[0]);
+            else
+                send(exchange, 200, served(exchange));
+        });
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        download(manifest, lib);
+        assertEquals(Collections.singletonList(lib), download(manifest, lib));
+        assertFalse(Files.exists(lib.getStagingPath()));
+        assertFalse(Files.exists(metadataPath(lib)));
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertNull(ranges.get(2));
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void partialWithOtherMetadataIsDownloadedAgain() throws Exception {
+        URI uri = serve(exchange -> send(exchange, 200, served(exchange)));
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        Files.write(lib.getStagingPath(), Arrays.copyOf(served(lib), (int) (lib.size / 2)));
+        Properties props = new Properties();
+        props.setProperty("file", lib.file);
+        props.setProperty("size", String.valueOf(lib.size));
+        props.setProperty("checksum", String.valueOf(lib.checksum + 1));
+        props.setProperty("algorithm", lib.getAlgorithm().name());
+        try (OutputStream output = Files.newOutputStream(metadataPath(lib))) {
+            props.store(output, null);
+        }
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertEquals(Collections.singletonList(null), ranges);
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void partialWithoutMetadataIsDownloadedAgain() throws Exception {
+        URI uri = serve(exchange -> send(exchange, 200, served(exchange)));
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        Files.write(lib.getStagingPath(), Arrays.copyOf(served(lib), (int) (lib.size / 2)));
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertEquals(Collections.singletonList(null), ranges);
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void fullyStagedFileIsNotDownloadedAgain() throws Exception {
+        URI uri = serve(exchange -> send(exchange, 200, served(exchange)));
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+
+        Files.write(lib.getStagingPath(), served(lib));
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void corruptDownloadLeavesNothingStaged() throws Exception {
+        URI uri = serve(exchange -> {
+            byte[] data = served(exchange);
+            data[data.length / 2] ^= 1;
+            send(exchange, 200, data);
+        });
+        FXManifest manifest = manifest(uri);
+        LibraryFile lib = manifest.files.get(0);
+        byte[] old = "installed".getBytes(StandardCharsets.UTF_8);
+        Files.write(lib.toPath(), old);
+
+        assertEquals(Collections.singletonList(lib), download(manifest, lib));
+        assertFalse(Files.exists(lib.getStagingPath()));
+        assertFalse(Files.exists(metadataPath(lib)));
+        assertArrayEquals(old, Files.readAllBytes(lib.toPath()));
+    }
+
+    @Test
+    public void filesAreOnlyReplacedWhenEveryDownloadSucceeded() throws Exception {
+        AtomicBoolean missing = new AtomicBoolean(true);
+        URI uri = serve(exchange -> {
+            if (missing.get() && exchange.getRequestURI().getPath().endsWith("lib3.jar"))
+                send(exchange, 404, new byte[0]);
+            else
+                send(exchange, 200, served(exchange));
+        });
+        FXManifest manifest = manifest(uri);
+        byte[] old = "installed".getBytes(StandardCharsets.UTF_8);
+        for (LibraryFile lib : manifest.files)
+            Files.write(lib.toPath(), old);
+
+        FileSynchronizer synchronizer = new FileSynchronizer(manifest, progress -> {});
+        assertFalse(synchronizer.sync());
+        assertEquals(Collections.singletonList(manifest.files.get(3)), synchronizer.getFailed());
+        for (LibraryFile lib : manifest.files)
+            assertArrayEquals(lib.file, old, Files.readAllBytes(lib.toPath()));
+        assertFalse(Files.exists(manifest.getPath()));
+
+        missing.set(false);
+        assertTrue(synchronizer.sync());
+        for (LibraryFile lib : manifest.files) {
+            assertArrayEquals(lib.file, served(lib), Files.readAllBytes(lib.toPath()));
+            assertFalse(lib.file, Files.exists(lib.getStagingPath()));
+            assertFalse(lib.file, Files.exists(metadataPath(lib)));
+        }
+        assertTrue(Files.exists(manifest.getPath()));
+        assertTrue(manifest.filesNeedingUpdate().isEmpty());
+    }
+
+    @Test
+    public void connectionsToOneHostAreLimited() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        URI uri = serve(exchange -> {
+            // The request counts as active while the server is busy, which is within the permit of the client
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            sleep(200);
+            active.decrementAndGet();
+            send(exchange, 200, served(exchange));
+        });
+        FXManifest manifest = manifest(uri);
+        manifest.downloadThreads = 4;
+        manifest.connectionsPerHost = 2;
+
+        assertTrue(new DownloadEngine(manifest).download(manifest.files, bytes -> {}).isEmpty());
+        assertEquals(4, ranges.size());
+        assertEquals(2, maxActive.get());
+    }
+
+    @Test
+    public void failedAttemptIsRetried() throws Exception {
+        URI uri = serve(exchange -> {
+            if (ranges.size() == 1)
+                send(exchange, 500, new byte[0]);
+            else
+                send(exchange, 200, served(exchange));
+        });
+        FXManifest manifest = manifest(uri);
+        manifest.downloadRetries = 1;
+        LibraryFile lib = manifest.files.get(0);
+
+        assertTrue(download(manifest, lib).isEmpty());
+        assertEquals(2, ranges.size());
+        assertArrayEquals(served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    @Test
+    public void fileThatKeepsFailingDoesNotStopTheOthers() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        URI uri = serve(exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("lib1.jar")) {
+                attempts.incrementAndGet();
+                send(exchange, 500, new byte[0]);
+            } else {
+                send(exchange, 200, served(exchange));
+            }
+        });
+        FXManifest manifest = manifest(uri);
+        manifest.downloadRetries = 1;
+
+        assertEquals(Collections.singletonList(manifest.files.get(1)), new DownloadEngine(manifest).download(manifest.files, bytes -> {}));
+        assertEquals(2, attempts.get());
+        for (LibraryFile lib : manifest.files)
+            if (lib != manifest.files.get(1))
+                assertArrayEquals(lib.file, served(lib), Files.readAllBytes(lib.getStagingPath()));
+    }
+
+    private List<LibraryFile> download(FXManifest manifest, LibraryFile... files) throws InterruptedException {
+        List<LibraryFile> libs = new ArrayList<>();
+        Collections.addAll(libs, files);
+        return new DownloadEngine(manifest).download(libs, bytes -> {});
+    }
+
+    /**
+     * A manifest for the served files with the given uri. The files are installed by absolute path in a
+     * temporary folder, and the launcher state is kept next to them, so nothing is written to the working directory.
+     */
+    private FXManifest manifest(URI uri) throws IOException {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = uri;
+        manifest.launchClass = installed.resolve("test.App").toString();
+        manifest.downloadRetries = 0;
+        try (java.util.stream.Stream<Path> files = Files.list(served)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                LibraryFile lib = new LibraryFile(served, file);
+                lib.file = installed.resolve(lib.file).toString();
+                lib.manifest = manifest;
+                manifest.files.add(lib);
+            }
+        }
+        return manifest;
+    }
+
+    private byte[] served(LibraryFile lib) throws IOException {
+        return Files.readAllBytes(served.resolve(lib.toPath().getFileName()));
+    }
+
+    private byte[] served(HttpExchange exchange) throws IOException {
+        return Files.readAllBytes(served.resolve(Paths.get(exchange.getRequestURI().getPath()).getFileName()));
+    }
+
+    private static Path metadataPath(LibraryFile lib) {
+        Path staging = lib.getStagingPath();
+        return staging.resolveSibling(staging.getFileName() + ".meta");
+    }
+
+    /**
+     * Every request records its Range header, or null if it had none, before it is handled.
+     */
+    private URI serve(Handler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            ranges.add(exchange.getRequestHeaders().getFirst("Range"));
+            try {
+                handler.handle(exchange);
+            } catch (IOException ex) {
+                exchange.close();
+            }
+        });
+        server.start();
+        servers.add(server);
+        return URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+    }
+
+    private void sendHalf(HttpExchange exchange) throws IOException {
+        byte[] data = served(exchange);
+        exchange.sendResponseHeaders(200, data.length);
+        exchange.getResponseBody().write(data, 0, data.length / 2);
+        exchange.close();
+    }
+
+    private void sendRange(HttpExchange exchange) throws IOException {
+        byte[] data = served(exchange);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        exchange.getResponseHeaders().set("Content-Range", String.format("bytes %d-%d/%d", offset, data.length - 1, data.length));
+        exchange.sendResponseHeaders(206, data.length - offset);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(data, offset, data.length - offset);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] data) throws IOException {
+        exchange.sendResponseHeaders(status, data.length == 0 ? -1 : data.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(data);
+        }
+    }
+
+    /**
+     * A jar with one stored entry of random bytes, so a partial download is never mistaken for the whole file.
+     */
+    private static byte[] jar(String name, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.setLevel(0);
+            zip.putNextEntry(new ZipEntry(name + "/data.bin"));
+            byte[] data = new byte[256 * 1024];
+            random.nextBytes(data);
+            zip.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
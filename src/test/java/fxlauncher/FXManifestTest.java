@@ -0,0 +1,40 @@
+package fxlauncher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FXManifestTest {
+    @Test
+    public void equalManifestsHaveEqualHashCodes() {
+        FXManifest manifest = ManifestXmlTest.manifest();
+        FXManifest other = ManifestXmlTest.manifest();
+
+        assertEquals(manifest, other);
+        assertEquals(manifest.hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void manifestThatOnlyChangesHowAFileIsDeliveredIsNotEqual() {
+        assertChanges(lib -> lib.algorithm = HashAlgorithm.xxhash64);
+        assertChanges(lib -> lib.bundle = "bundles/other.zip");
+        assertChanges(lib -> lib.gzipSize = 1L);
+        assertChanges(lib -> lib.lazy = true);
+        assertChanges(lib -> lib.packages = Arrays.asList("com/example"));
+        assertChanges(lib -> lib.deltas.add(new DeltaFile("deltas/app.jar.1.delta", 1L, 10L)));
+        assertChanges(lib -> lib.os = OS.mac);
+    }
+
+    private static void assertChanges(Consumer<LibraryFile> change) {
+        FXManifest manifest = ManifestXmlTest.manifest();
+        FXManifest changed = ManifestXmlTest.manifest();
+        change.accept(changed.files.get(0));
+
+        assertNotEquals(manifest, changed);
+        assertNotEquals(manifest.files.get(0).hashCode(), changed.files.get(0).hashCode());
+    }
+}
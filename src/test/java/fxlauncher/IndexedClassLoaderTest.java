@@ -0,0 +1,93 @@
+package fxlauncher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+public class IndexedClassLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void multiReleaseJarProvidesVersionedClassesAndResources() throws Exception {
+        assumeFalse("Multi-release jars need Java 9", System.getProperty("java.specification.version").startsWith("1."));
+
+        Path base = compile("base", "package mr; public class Impl { public String toString() { return \"base\"; } }");
+        Path versioned = compile("versioned", "package mr; public class Impl { public String toString() { return \"versioned\"; } }",
+                "package mr; public class Only { public String toString() { return \"only\"; } }");
+
+        Path jar = folder.getRoot().toPath().resolve("mr.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Multi-Release", "true");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            add(out, "mr/Impl.class", Files.readAllBytes(base.resolve("mr/Impl.class")));
+            add(out, "mr/data.txt", "base".getBytes(StandardCharsets.UTF_8));
+            add(out, "META-INF/versions/9/mr/Impl.class", Files.readAllBytes(versioned.resolve("mr/Impl.class")));
+            add(out, "META-INF/versions/9/mr/Only.class", Files.readAllBytes(versioned.resolve("mr/Only.class")));
+            add(out, "META-INF/versions/9/mr/data.txt", "versioned".getBytes(StandardCharsets.UTF_8));
+        }
+
+        LibraryFile lib = new LibraryFile(folder.getRoot().toPath(), jar);
+        lib.file = jar.toString();
+        List<LibraryFile> libs = Collections.singletonList(lib);
+
+        try (IndexedClassLoader loader = new IndexedClassLoader(libs, PackageIndex.build(libs), null)) {
+            assertEquals("versioned", loader.loadClass("mr.Impl").getDeclaredConstructor().newInstance().toString());
+            assertEquals("only", loader.loadClass("mr.Only").getDeclaredConstructor().newInstance().toString());
+            try (InputStream input = loader.getResource("mr/data.txt").openStream()) {
+                assertEquals("versioned", new String(readAll(input), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private Path compile(String name, String... sources) throws IOException {
+        Path dir = folder.newFolder(name).toPath();
+        Path src = Files.createDirectories(dir.resolve("src/mr"));
+        String[] args = new String[sources.length + 2];
+        args[0] = "-d";
+        args[1] = dir.toString();
+        for (int i = 0; i < sources.length; i++) {
+            String className = sources[i].replaceAll("(?s).*public class (\\w+).*", "$1");
+            Path file = src.resolve(className + ".java");
+            Files.write(file, sources[i].getBytes(StandardCharsets.UTF_8));
+            args[i + 2] = file.toString();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, args));
+        return dir;
+    }
+
+    private static void add(JarOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while ((read = input.read(buf)) > -1)
+            bytes.write(buf, 0, read);
+        return bytes.toByteArray();
+    }
+}
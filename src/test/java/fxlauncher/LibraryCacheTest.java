@@ -0,0 +1,209 @@
+package fxlauncher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LibraryCacheTest {
+    private static final int SIZE = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private Path served;
+    private LibraryCache cache;
+
+    @Before
+    public void createFiles() throws IOException {
+        served = folder.newFolder("served").toPath();
+        cache = new LibraryCache(folder.newFolder("cache").toPath());
+        Random random = new Random(42);
+        for (String name : Arrays.asList("a.jar", "b.jar", "c.jar", "d.jar")) {
+            byte[] data = new byte[SIZE];
+            random.nextBytes(data);
+            Files.write(served.resolve(name), data);
+        }
+    }
+
+    @After
+    public void stopServer() {
+        if (server != null)
+            server.stop(0);
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void lockMakesOtherThreadsWait() throws Exception {
+        LibraryFile lib = library("a.jar");
+        CountDownLatch locked = new CountDownLatch(1);
+
+        CompletableFuture<Void> other;
+        try (LibraryCache.Lock lock = cache.lock(lib)) {
+            other = CompletableFuture.runAsync(() -> {
+                try (LibraryCache.Lock otherLock = cache.lock(lib)) {
+                    locked.countDown();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            assertFalse(locked.await(200, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        other.get();
+    }
+
+    @Test
+    public void launchersNeedingTheSameFileDownloadItOnce() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] data = Files.readAllBytes(served.resolve(Paths.get(exchange.getRequestURI().getPath()).getFileName()));
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(data);
+            }
+        });
+        server.start();
+        URI uri = URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+
+        List<CompletableFuture<List<LibraryFile>>> downloads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            FXManifest manifest = manifest(String.format("test.App%d", i), uri, "a.jar");
+            downloads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new DownloadEngine(manifest).download(manifest.files, bytes -> {});
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }));
+        }
+
+        for (CompletableFuture<List<LibraryFile>> download : downloads)
+            assertTrue(download.get().isEmpty());
+        assertEquals(1, requests.get());
+        assertTrue(cache.contains(library("a.jar")));
+    }
+
+    @Test
+    public void leastRecentlyUsedFilesAreEvictedFirst() throws Exception {
+        setUpVersions();
+
+        cache.evict(3 * SIZE + SIZE / 2);
+
+        assertPublished(true, "a.jar", "b.jar", "c.jar");
+        assertPublished(false, "d.jar");
+        assertTrue(Files.exists(view("1.xml")));
+        assertTrue(Files.exists(view("2.xml")));
+    }
+
+    @Test
+    public void latestVersionIsKeptAndViewsMissingFilesAreRemoved() throws Exception {
+        setUpVersions();
+
+        cache.evict(SIZE);
+
+        assertPublished(true, "b.jar", "c.jar");
+        assertPublished(false, "a.jar", "d.jar");
+        assertFalse(Files.exists(view("1.xml")));
+        assertTrue(Files.exists(view("2.xml")));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void lockedFilesAreNotEvicted() throws Exception {
+        setUpVersions();
+
+        try (LibraryCache.Lock lock = cache.lock(library("d.jar"))) {
+            // Another thread, because the locks of the cache are reentrant within a thread
+            CompletableFuture.runAsync(() -> {
+                try {
+                    cache.evict(SIZE);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }).get();
+        }
+
+        assertPublished(true, "b.jar", "c.jar", "d.jar");
+        assertPublished(false, "a.jar");
+    }
+
+    /**
+     * Version 1 uses a and b and was launched before version 2, which uses b and c. The file d is not used by
+     * any version and was published before both were launched.
+     */
+    private void setUpVersions() throws IOException {
+        for (String name : Arrays.asList("a.jar", "b.jar", "c.jar", "d.jar")) {
+            Path path = cache.resolve(library(name));
+            Files.createDirectories(path.getParent());
+            Files.copy(served.resolve(name), path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(500_000));
+        }
+
+        Files.createDirectories(view("1.xml").getParent());
+        ManifestXml.write(manifest("test.App", URI.create("http://localhost/"), "a.jar", "b.jar"), view("1.xml"));
+        Files.setLastModifiedTime(view("1.xml"), FileTime.fromMillis(1_000_000));
+        ManifestXml.write(manifest("test.App", URI.create("http://localhost/"), "b.jar", "c.jar"), view("2.xml"));
+        Files.setLastModifiedTime(view("2.xml"), FileTime.fromMillis(2_000_000));
+    }
+
+    private void assertPublished(boolean published, String... names) throws IOException {
+        for (String name : names)
+            assertEquals(name, published, Files.exists(cache.resolve(library(name))));
+    }
+
+    private Path view(String name) {
+        return cache.getRoot().resolve("views").resolve("test.App").resolve(name);
+    }
+
+    private FXManifest manifest(String launchClass, URI uri, String... names) throws IOException {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = uri;
+        manifest.launchClass = folder.getRoot().toPath().resolve(launchClass).toString();
+        manifest.sharedCache = cache.getRoot().toString();
+        manifest.downloadRetries = 0;
+        for (String name : names) {
+            LibraryFile lib = library(name);
+            lib.manifest = manifest;
+            manifest.files.add(lib);
+        }
+        return manifest;
+    }
+
+    private LibraryFile library(String name) throws IOException {
+        return new LibraryFile(served, served.resolve(name));
+    }
+}
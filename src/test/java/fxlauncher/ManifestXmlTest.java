@@ -0,0 +1,178 @@
+package fxlauncher;
+
+import org.junit.Test;
+
+import javax.xml.bind.JAXB;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ManifestXmlTest {
+    @Test
+    public void readsBundledManifestLikeJaxb() throws IOException {
+        URL url = ManifestXmlTest.class.getResource("/app.xml");
+
+        FXManifest jaxb = JAXB.unmarshal(url, FXManifest.class);
+        FXManifest manifest = ManifestXml.read(url);
+
+        assertEquals(jaxb, manifest);
+        assertManifestsEqual(jaxb, manifest);
+    }
+
+    @Test
+    public void roundTripsEveryField() throws IOException {
+        FXManifest manifest = manifest();
+
+        FXManifest read = roundTrip(manifest);
+
+        assertEquals(manifest, read);
+        assertManifestsEqual(manifest, read);
+        assertEquals(HashAlgorithm.xxhash64, read.files.get(0).defaultAlgorithm);
+        assertEquals(read, read.files.get(0).manifest);
+    }
+
+    @Test
+    public void roundTripsMinimalManifest() throws IOException {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = URI.create("http://localhost/app/");
+        manifest.launchClass = "test.App";
+        manifest.majorVersion = "1";
+        manifest.minorVersion = "0";
+        manifest.buildVersion = "0";
+        LibraryFile lib = library("app.jar", 1L, 10L);
+        manifest.files.add(lib);
+
+        FXManifest read = roundTrip(manifest);
+
+        assertManifestsEqual(manifest, read);
+        LibraryFile readLib = read.files.get(0);
+        assertNull(readLib.algorithm);
+        assertNull(readLib.bundle);
+        assertNull(readLib.gzipSize);
+        assertNull(readLib.lazy);
+        assertNull(readLib.packages);
+    }
+
+    @Test
+    public void writtenManifestIsReadableByJaxb() throws IOException {
+        FXManifest manifest = manifest();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ManifestXml.write(manifest, output);
+
+        FXManifest jaxb = JAXB.unmarshal(new ByteArrayInputStream(output.toByteArray()), FXManifest.class);
+
+        assertManifestsEqual(manifest, jaxb);
+    }
+
+    /**
+     * A manifest with every field set to something other than its default.
+     */
+    static FXManifest manifest() {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = URI.create("http://localhost/app/");
+        manifest.launchClass = "test.App";
+        manifest.algorithm = HashAlgorithm.xxhash64;
+        manifest.mirrors.add(URI.create("http://mirror.example.com/app/"));
+        manifest.mirrors.add(URI.create("file:/srv/app/"));
+        manifest.updateText = "Please wait & see";
+        manifest.updateLabelStyle = "-fx-font-weight: normal;";
+        manifest.progressBarStyle = "-fx-pref-width: 300;";
+        manifest.wrapperStyle = "-fx-spacing: 5;";
+        manifest.parameters = "--mode=<test>";
+        manifest.majorVersion = "2";
+        manifest.minorVersion = "1";
+        manifest.buildVersion = "42";
+        manifest.releaseNotes = "Line one\nLine two";
+        manifest.downloadThreads = 3;
+        manifest.connectionsPerHost = 8;
+        manifest.downloadRetries = 5;
+        manifest.updateMode = UpdateMode.background;
+        manifest.classDataSharing = true;
+        manifest.connectTimeout = 1234;
+        manifest.readTimeout = 5678;
+        manifest.sharedCache = "/var/cache/app";
+        manifest.sharedCacheSize = 512;
+
+        LibraryFile app = library("app.jar", -7L, 123456L);
+        app.modified = 1500000000000L;
+        app.algorithm = HashAlgorithm.crc32c;
+        app.gzipSize = 65432L;
+        app.deltas.add(new DeltaFile("deltas/app.jar.11.delta", 11L, 2000L));
+        app.deltas.add(new DeltaFile("deltas/app.jar.-12.delta", -12L, 3000L));
+        manifest.files.add(app);
+
+        LibraryFile small = library("small-win.jar", 99L, 100L);
+        small.os = OS.win;
+        small.bundle = "bundles/0123abcd.zip";
+        manifest.files.add(small);
+
+        LibraryFile lazy = library("lib/reports.jar", Long.MAX_VALUE, 999L);
+        lazy.lazy = true;
+        lazy.packages = Arrays.asList("com/example/reports", "com/example/reports/pdf", "templates");
+        manifest.files.add(lazy);
+
+        return manifest;
+    }
+
+    static void assertManifestsEqual(FXManifest expected, FXManifest actual) {
+        assertEquals(expected.uri, actual.uri);
+        assertEquals(expected.launchClass, actual.launchClass);
+        assertEquals(expected.algorithm, actual.algorithm);
+        assertEquals(expected.mirrors, actual.mirrors);
+        assertEquals(expected.updateText, actual.updateText);
+        assertEquals(expected.updateLabelStyle, actual.updateLabelStyle);
+        assertEquals(expected.progressBarStyle, actual.progressBarStyle);
+        assertEquals(expected.wrapperStyle, actual.wrapperStyle);
+        assertEquals(expected.parameters, actual.parameters);
+        assertEquals(expected.majorVersion, actual.majorVersion);
+        assertEquals(expected.minorVersion, actual.minorVersion);
+        assertEquals(expected.buildVersion, actual.buildVersion);
+        assertEquals(expected.releaseNotes, actual.releaseNotes);
+        assertEquals(expected.downloadThreads, actual.downloadThreads);
+        assertEquals(expected.connectionsPerHost, actual.connectionsPerHost);
+        assertEquals(expected.downloadRetries, actual.downloadRetries);
+        assertEquals(expected.updateMode, actual.updateMode);
+        assertEquals(expected.classDataSharing, actual.classDataSharing);
+        assertEquals(expected.connectTimeout, actual.connectTimeout);
+        assertEquals(expected.readTimeout, actual.readTimeout);
+        assertEquals(expected.sharedCache, actual.sharedCache);
+        assertEquals(expected.sharedCacheSize, actual.sharedCacheSize);
+
+        assertEquals(expected.files.size(), actual.files.size());
+        for (int i = 0; i < expected.files.size(); i++) {
+            LibraryFile lib = expected.files.get(i);
+            LibraryFile other = actual.files.get(i);
+            assertEquals(lib.file, other.file);
+            assertEquals(lib.file, lib.checksum, other.checksum);
+            assertEquals(lib.file, lib.size, other.size);
+            assertEquals(lib.file, lib.os, other.os);
+            assertEquals(lib.file, lib.modified, other.modified);
+            assertEquals(lib.file, lib.algorithm, other.algorithm);
+            assertEquals(lib.file, lib.bundle, other.bundle);
+            assertEquals(lib.file, lib.gzipSize, other.gzipSize);
+            assertEquals(lib.file, lib.lazy, other.lazy);
+            assertEquals(lib.file, lib.packages, other.packages);
+            assertEquals(lib.file, lib.deltas, other.deltas);
+        }
+    }
+
+    private static FXManifest roundTrip(FXManifest manifest) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ManifestXml.write(manifest, output);
+        return ManifestXml.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private static LibraryFile library(String file, Long checksum, Long size) {
+        LibraryFile lib = new LibraryFile();
+        lib.file = file;
+        lib.checksum = checksum;
+        lib.size = size;
+        return lib;
+    }
+}
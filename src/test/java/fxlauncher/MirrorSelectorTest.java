@@ -0,0 +1,189 @@
+package fxlauncher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MirrorSelectorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private Path served;
+
+    @Before
+    public void createFiles() throws IOException {
+        served = folder.newFolder("served").toPath();
+        for (int i = 0; i < 4; i++)
+            Files.write(served.resolve(String.format("lib%d.jar", i)), jar(String.format("lib%d", i), 64 * 1024));
+    }
+
+    @After
+    public void stopServers() {
+        for (HttpServer server : servers)
+            server.stop(0);
+    }
+
+    @Test
+    public void candidatesAreOrderedByResponseTimeWithoutFailedMirrors() throws Exception {
+        URI fast = serve(exchange -> send(exchange, 200, new byte[0]));
+        URI slow = serve(exchange -> {
+            sleep(300);
+            send(exchange, 200, new byte[0]);
+        });
+        URI broken = serve(exchange -> send(exchange, 500, new byte[0]));
+        URI down = unusedPort();
+
+        FXManifest manifest = manifest(fast, slow, broken, down);
+        MirrorSelector selector = new MirrorSelector(manifest, new HttpSession(manifest));
+
+        assertEquals(Arrays.asList(fast, slow), selector.candidates(manifest.files.get(0)));
+    }
+
+    @Test
+    public void failedMirrorIsSkippedAfterItFailsRepeatedly() throws Exception {
+        URI primary = serve(exchange -> send(exchange, 200, new byte[0]));
+        URI mirror = serve(exchange -> send(exchange, 200, new byte[0]));
+
+        FXManifest manifest = manifest(primary, mirror);
+        MirrorSelector selector = new MirrorSelector(manifest, new HttpSession(manifest));
+        selector.probe();
+        selector.failed(mirror);
+        selector.failed(mirror);
+
+        assertEquals(Arrays.asList(primary), selector.candidates(manifest.files.get(0)));
+    }
+
+    @Test
+    public void syncCompletesWhenMirrorFailsPartway() throws Exception {
+        // The mirror answers the probe fastest and serves one file, then cuts off every later download halfway
+        AtomicInteger mirrorDownloads = new AtomicInteger();
+        URI mirror = serve(exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                send(exchange, 200, new byte[0]);
+                return;
+            }
+            byte[] data = Files.readAllBytes(served.resolve(exchange.getRequestURI().getPath().substring(1)));
+            if (mirrorDownloads.getAndIncrement() == 0) {
+                send(exchange, 200, data);
+                return;
+            }
+            exchange.sendResponseHeaders(200, data.length);
+            exchange.getResponseBody().write(data, 0, data.length / 2);
+            exchange.close();
+        });
+        URI primary = serve(exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod()))
+                sleep(300);
+            send(exchange, 200, "HEAD".equals(exchange.getRequestMethod()) ? new byte[0]
+                    : Files.readAllBytes(served.resolve(exchange.getRequestURI().getPath().substring(1))));
+        });
+
+        FXManifest manifest = manifest(primary, mirror);
+        manifest.downloadThreads = 1;
+
+        assertTrue(new FileSynchronizer(manifest, progress -> {}).sync());
+        assertTrue(mirrorDownloads.get() > 1);
+        for (LibraryFile lib : manifest.files)
+            assertArrayEquals(lib.file, Files.readAllBytes(served.resolve(lib.file)), Files.readAllBytes(lib.toPath()));
+    }
+
+    /**
+     * A manifest for the served files with the given uri and mirrors. The files are stored in a shared cache and
+     * the launcher state next to it, so nothing is written to the working directory.
+     */
+    private FXManifest manifest(URI uri, URI... mirrors) throws IOException {
+        FXManifest manifest = new FXManifest();
+        manifest.uri = uri;
+        manifest.launchClass = folder.getRoot().toPath().resolve("test.App").toString();
+        manifest.mirrors.addAll(Arrays.asList(mirrors));
+        manifest.sharedCache = folder.newFolder("cache").toString();
+        manifest.downloadRetries = 0;
+        try (java.util.stream.Stream<Path> files = Files.list(served)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                LibraryFile lib = new LibraryFile(served, file);
+                lib.manifest = manifest;
+                manifest.files.add(lib);
+            }
+        }
+        return manifest;
+    }
+
+    private URI serve(Handler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (IOException ex) {
+                exchange.close();
+            }
+        });
+        server.start();
+        servers.add(server);
+        return URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+    }
+
+    private static URI unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return URI.create(String.format("http://127.0.0.1:%d/", socket.getLocalPort()));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] data) throws IOException {
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || data.length == 0 ? -1 : data.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            if (!head)
+                output.write(data);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] jar(String name, int size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.setLevel(0);
+            zip.putNextEntry(new ZipEntry(name + "/data.bin"));
+            byte[] data = new byte[size];
+            Arrays.fill(data, (byte) name.hashCode());
+            zip.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,135 @@
+package fxlauncher;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VerificationIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private Path indexPath;
+    private LibraryFile lib;
+
+    @Before
+    public void createFile() throws IOException {
+        Path dir = folder.newFolder("app").toPath();
+        file = dir.resolve("lib.jar");
+        byte[] data = new byte[64 * 1024];
+        new Random(42).nextBytes(data);
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        lib = new LibraryFile(dir, file);
+        indexPath = dir.resolve("test.App.index");
+    }
+
+    @Test
+    public void unchangedFileIsNotHashedAgain() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+
+        // A change that keeps the size and modification time goes unnoticed, which shows the file is not read
+        corruptKeepingAttributes();
+        assertFalse(index.needsUpdate(lib, file));
+    }
+
+    @Test
+    public void modifiedFileIsHashedAgain() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+
+        corruptKeepingAttributes();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        assertTrue(index.needsUpdate(lib, file));
+    }
+
+    @Test
+    public void resizedFileNeedsUpdate() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+
+        Files.write(file, new byte[1]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        assertTrue(index.needsUpdate(lib, file));
+    }
+
+    @Test
+    public void missingFileNeedsUpdate() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+
+        Files.delete(file);
+        assertTrue(index.needsUpdate(lib, file));
+    }
+
+    @Test
+    public void verifiedFilesAreTrustedAfterReload() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        index.verified(file, lib.getAlgorithm(), lib.checksum);
+        index.save();
+
+        corruptKeepingAttributes();
+        assertFalse(VerificationIndex.load(indexPath).needsUpdate(lib, file));
+    }
+
+    @Test
+    public void checksumOfOtherAlgorithmIsNotTrusted() throws Exception {
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        index.verified(file, HashAlgorithm.xxhash64, lib.checksum + 1);
+
+        assertEquals(HashAlgorithm.crc32c.hash(file), index.checksum(file, HashAlgorithm.crc32c));
+        assertFalse(index.needsUpdate(lib, file));
+    }
+
+    @Test
+    public void versionOneIndexIsReadAsAdler32() throws Exception {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        String fileKey = attrs.fileKey() == null ? "-" : attrs.fileKey().toString().replace('\t', ' ');
+        Files.write(indexPath, Arrays.asList("# fxlauncher verification index v1",
+                String.format("%s\t%d\t%d\t%s\t%d", file, attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey, lib.checksum)),
+                StandardCharsets.UTF_8);
+
+        corruptKeepingAttributes();
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+
+        index.save();
+        assertEquals("# fxlauncher verification index v2", Files.readAllLines(indexPath, StandardCharsets.UTF_8).get(0));
+    }
+
+    @Test
+    public void unreadableIndexIsIgnored() throws Exception {
+        Files.write(indexPath, Arrays.asList("# fxlauncher verification index v2", String.format("%s\tnot\ta\tnumber\tadler32\t1", file)),
+                StandardCharsets.UTF_8);
+
+        VerificationIndex index = VerificationIndex.load(indexPath);
+        assertFalse(index.needsUpdate(lib, file));
+        corruptKeepingAttributes();
+        assertFalse(index.needsUpdate(lib, file));
+    }
+
+    /**
+     * Change one byte of the file in place, keeping its size, modification time and file key.
+     */
+    private void corruptKeepingAttributes() throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        data[0] ^= 1;
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+    }
+}
@@ -0,0 +1,93 @@
+package fxlauncher;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class XxHash64Test {
+    /**
+     * Lengths around the 32 byte stripe and the 8 and 4 byte tails, with the expected hashes of the first
+     * bytes of {@link #data()} as computed by the reference implementation with seed 0.
+     */
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 1000};
+    private static final long[] HASHES = {
+            0xEF46DB3751D8E999L, 0xA96C7F0CE858BBB7L, 0x56E6957632A487F9L, 0xC60D15B1E3FF8F04L,
+            0xAFBEFC3D6C6F9A8EL, 0x3DA5C7AA269683E0L, 0x4B17A9BA9E215C09L, 0xAE2A37EB9357CAA7L,
+            0xA19AD429B02BC413L, 0xFE9F0FEB7EEEDC09L, 0x4A74F3A1A39AD4A1L, 0x8D57D6A4671CC43DL,
+            0x62C9FD21ED857664L, 0x5C320A0D2707057FL, 0x7BBABBC45729D17EL, 0xF3980C34BAE65DC1L,
+            0xEFA0AD2D3E70C151L, 0x99594F4828043D35L
+    };
+
+    @Test
+    public void referenceStrings() {
+        assertEquals(0xEF46DB3751D8E999L, hash(new byte[0]));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void byteArrays() {
+        byte[] data = data();
+        for (int i = 0; i < LENGTHS.length; i++) {
+            XxHash64 hash = new XxHash64();
+            hash.update(data, 0, LENGTHS[i]);
+            assertEquals("length " + LENGTHS[i], HASHES[i], hash.getValue());
+        }
+    }
+
+    @Test
+    public void buffers() {
+        byte[] data = data();
+        for (int i = 0; i < LENGTHS.length; i++) {
+            for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(LENGTHS[i]), ByteBuffer.allocateDirect(LENGTHS[i])}) {
+                buffer.put(data, 0, LENGTHS[i]).flip();
+                XxHash64 hash = new XxHash64();
+                hash.update(buffer);
+                assertEquals("length " + LENGTHS[i], HASHES[i], hash.getValue());
+                assertEquals(0, buffer.remaining());
+            }
+        }
+    }
+
+    @Test
+    public void splitUpdates() {
+        byte[] data = data();
+        for (int i = 0; i < LENGTHS.length; i++) {
+            for (int split = 0; split <= LENGTHS[i]; split += Math.max(1, LENGTHS[i] / 7)) {
+                XxHash64 hash = new XxHash64();
+                hash.update(data, 0, split);
+                if (split < LENGTHS[i])
+                    hash.update(data[split]);
+                if (split + 1 < LENGTHS[i])
+                    hash.update(ByteBuffer.wrap(data, split + 1, LENGTHS[i] - split - 1));
+                assertEquals("length " + LENGTHS[i] + " split at " + split, HASHES[i], hash.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void reset() {
+        XxHash64 hash = new XxHash64();
+        hash.update(data(), 0, 100);
+        hash.reset();
+        hash.update(data(), 0, 33);
+        assertEquals(HASHES[12], hash.getValue());
+    }
+
+    private static long hash(byte[] data) {
+        XxHash64 hash = new XxHash64();
+        hash.update(data, 0, data.length);
+        return hash.getValue();
+    }
+
+    private static byte[] data() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 31 + 7);
+        return data;
+    }
+}